@@ -0,0 +1,207 @@
+package com.rotation.controller;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * On-disk cache of the metadata shown by {@link PresetsActivity}: label, system flag, last update time
+ * and a small pre-rendered icon, so that the list renders without asking the package manager again.
+ * Entries are revalidated against {@code PackageInfo.lastUpdateTime}, the whole file against the
+ * locales and screen density the labels and icons were rendered for.
+ */
+public class ApplicationCache {
+
+    public static final String TAG = ApplicationCache.class.getSimpleName();
+
+    public static final String FILE_NAME = "application_cache.bin";
+    public static final int FORMAT_VERSION = 2;
+    public static final int ICON_SIZE_DP = 40;
+
+    private final File file;
+    private final Resources resources;
+    private final int iconSize;
+    private final String locales;
+    private final int densityDpi;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    public ApplicationCache(Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        this.resources = context.getResources();
+        this.iconSize = Math.round(ICON_SIZE_DP * resources.getDisplayMetrics().density);
+        this.locales = resources.getConfiguration().getLocales().toLanguageTags();
+        this.densityDpi = resources.getConfiguration().densityDpi;
+    }
+
+    public synchronized List<Entry> load() {
+        if (!loaded) {
+            loaded = true;
+            read();
+        }
+
+        return new ArrayList<>(entries.values());
+    }
+
+    @Nullable
+    public synchronized Entry get(String packageName) {
+        return entries.get(packageName);
+    }
+
+    public Entry put(String packageName, @Nullable String label, boolean system, long lastUpdateTime, Drawable icon) {
+        Entry entry = new Entry(packageName, label, system, lastUpdateTime, renderIcon(icon));
+
+        synchronized (this) {
+            entries.put(packageName, entry);
+            dirty = true;
+        }
+
+        return entry;
+    }
+
+    public synchronized void remove(String packageName) {
+        if (entries.remove(packageName) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Write the entries back if anything changed since they were read.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(locales);
+            output.writeInt(densityDpi);
+            output.writeInt(entries.size());
+
+            for (Entry entry : entries.values()) {
+                output.writeUTF(entry.packageName);
+                output.writeUTF(entry.label != null ? entry.label : "");
+                output.writeBoolean(entry.system);
+                output.writeLong(entry.lastUpdateTime);
+                output.writeInt(entry.icon.length);
+                output.write(entry.icon);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "failed to write application cache", e);
+            return;
+        }
+
+        if (!temporary.renameTo(file)) {
+            Log.e(TAG, "failed to replace application cache");
+            return;
+        }
+
+        dirty = false;
+        Log.i(TAG, String.format("saved application cache - count=%d", entries.size()));
+    }
+
+    @Nullable
+    public Drawable decodeIcon(Entry entry) {
+        if (entry.icon.length == 0) {
+            return null;
+        }
+
+        Bitmap bitmap = BitmapFactory.decodeByteArray(entry.icon, 0, entry.icon.length);
+        return bitmap != null ? new BitmapDrawable(resources, bitmap) : null;
+    }
+
+    private void read() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != FORMAT_VERSION) {
+                Log.i(TAG, "discarding application cache of another format");
+                dirty = true;
+                return;
+            }
+
+            String cachedLocales = input.readUTF();
+            int cachedDensityDpi = input.readInt();
+            if (!cachedLocales.equals(locales) || cachedDensityDpi != densityDpi) {
+                Log.i(TAG, String.format("discarding application cache of another configuration - locales=%s densityDpi=%d", cachedLocales, cachedDensityDpi));
+                dirty = true;
+                return;
+            }
+
+            int count = input.readInt();
+            for (int index = 0; index < count; index++) {
+                String packageName = input.readUTF();
+                String label = input.readUTF();
+                boolean system = input.readBoolean();
+                long lastUpdateTime = input.readLong();
+
+                byte[] icon = new byte[input.readInt()];
+                input.readFully(icon);
+
+                entries.put(packageName, new Entry(packageName, label.isEmpty() ? null : label, system, lastUpdateTime, icon));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "failed to read application cache, starting over", e);
+            entries.clear();
+        }
+
+        Log.i(TAG, String.format("loaded application cache - count=%d", entries.size()));
+    }
+
+    private byte[] renderIcon(Drawable icon) {
+        Bitmap bitmap = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        icon.setBounds(0, 0, iconSize, iconSize);
+        icon.draw(canvas);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, output);
+        bitmap.recycle();
+
+        return output.toByteArray();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+
+        private final String packageName;
+        private final @Nullable String label;
+        private final boolean system;
+        private final long lastUpdateTime;
+        private final byte[] icon;
+
+    }
+
+}
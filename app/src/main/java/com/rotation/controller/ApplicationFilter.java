@@ -0,0 +1,156 @@
+package com.rotation.controller;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Searches the presets application list on a background thread, through an {@link ApplicationSearchIndex}
+ * rebuilt only when the list content changes.
+ * <p>
+ * Only the latest request is processed when keystrokes pile up. When the query only grew (and nothing
+ * else changed) the search is restricted to the previous result instead of every application, as long
+ * as that result was complete (the fuzzy tier ran). Results
+ * come with a {@link DiffUtil.DiffResult} against the previously delivered list so that the adapter
+ * only rebinds what changed.
+ */
+public class ApplicationFilter {
+
+    public interface Listener {
+
+        /**
+         * Called on the main thread, every result must be applied, in order.
+         */
+        void onFiltered(List<ApplicationInfo> result, DiffUtil.DiffResult diff);
+
+    }
+
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+
+    private volatile boolean shutdown = false;
+
+    /* only accessed on the worker thread */
+    private List<ApplicationInfo> delivered = Collections.emptyList();
+    private BitSet deliveredIndexes = new BitSet();
+    private boolean deliveredComplete = false;
+    private @Nullable ApplicationSearchIndex index;
+    private int lastVersion = -1;
+    private String lastQuery = "";
+    private boolean lastShowSystem = false;
+
+    public ApplicationFilter(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param source  snapshot of all the applications, must not be modified afterwards
+     * @param version identifies the content of the source, to be changed whenever it is
+     */
+    public void filter(List<ApplicationInfo> source, int version, String query, boolean showSystem) {
+        pending.set(new Request(source, version, ApplicationSearchIndex.normalize(query), showSystem));
+        executor.execute(this::drain);
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        executor.shutdownNow();
+    }
+
+    private void drain() {
+        Request request = pending.getAndSet(null);
+        if (request == null) {
+            return;
+        }
+
+        if (index == null || request.version != lastVersion) {
+            index = new ApplicationSearchIndex(request.source);
+        }
+
+        /* typo tolerance starts at a given length, below it a longer query may match more */
+        boolean narrowing = deliveredComplete
+                && request.version == lastVersion
+                && request.showSystem == lastShowSystem
+                && request.query.startsWith(lastQuery)
+                && (lastQuery.isEmpty() || lastQuery.length() >= ApplicationSearchIndex.TYPO_MIN_LENGTH || request.query.length() < ApplicationSearchIndex.TYPO_MIN_LENGTH);
+
+        ApplicationSearchIndex.Result search = index.search(request.query, request.showSystem, narrowing ? deliveredIndexes : null);
+        int[] matches = search.getMatches();
+
+        List<ApplicationInfo> result = new ArrayList<>(matches.length);
+        BitSet resultIndexes = new BitSet(index.size());
+        for (int match : matches) {
+            result.add(index.get(match));
+            resultIndexes.set(match);
+        }
+
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new Callback(delivered, result), true);
+
+        delivered = result;
+        deliveredIndexes = resultIndexes;
+        deliveredComplete = search.isComplete();
+        lastVersion = request.version;
+        lastQuery = request.query;
+        lastShowSystem = request.showSystem;
+
+        handler.post(() -> {
+            if (!shutdown) {
+                listener.onFiltered(result, diff);
+            }
+        });
+    }
+
+    @RequiredArgsConstructor
+    private static class Request {
+
+        private final List<ApplicationInfo> source;
+        private final int version;
+        private final String query;
+        private final boolean showSystem;
+
+    }
+
+    @RequiredArgsConstructor
+    private static class Callback extends DiffUtil.Callback {
+
+        private final List<ApplicationInfo> oldList;
+        private final List<ApplicationInfo> newList;
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).getPackageName().equals(newList.get(newItemPosition).getPackageName());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            /* reloaded applications are new instances, mode changes are notified by the activity itself */
+            return oldList.get(oldItemPosition) == newList.get(newItemPosition);
+        }
+
+    }
+
+}
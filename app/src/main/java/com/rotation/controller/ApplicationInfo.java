@@ -0,0 +1,51 @@
+package com.rotation.controller;
+
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.Nullable;
+
+import lombok.Data;
+
+@Data
+class ApplicationInfo implements Comparable<ApplicationInfo> {
+
+    private String packageName;
+    private @Nullable String displayName;
+    private Drawable icon;
+    private @Nullable RotationMode currentMode;
+    private boolean isSystem;
+
+    /* normalized once, matched against the search query */
+    private final String searchKey;
+
+    public ApplicationInfo(String packageName, @Nullable String displayName, Drawable icon, @Nullable RotationMode currentMode, boolean isSystem) {
+        this.packageName = packageName;
+        this.displayName = displayName;
+        this.icon = icon;
+        this.currentMode = currentMode;
+        this.isSystem = isSystem;
+        this.searchKey = ApplicationSearchIndex.normalize(displayName != null ? displayName + "\n" + packageName : packageName);
+    }
+
+    public boolean hasName() {
+        return displayName != null;
+    }
+
+    @Override
+    public int compareTo(ApplicationInfo other) {
+        if (displayName != null && other.displayName == null) {
+            return -1;
+        }
+
+        if (displayName == null && other.displayName != null) {
+            return 1;
+        }
+
+        if (displayName != null) {
+            return displayName.compareToIgnoreCase(other.displayName);
+        }
+
+        return packageName.compareTo(other.packageName);
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.rotation.controller;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the installed applications to the main thread in sorted batches.
+ * <p>
+ * Entries from the {@link ApplicationCache} are delivered first, then only the packages whose
+ * {@code lastUpdateTime} changed (or that are new) get their labels and icons resolved, across a bounded
+ * worker pool. Packages that disappeared are reported as removed. Single packages can be refreshed
+ * afterwards, when a package broadcast is received.
+ */
+public class ApplicationLoader {
+
+    public static final String TAG = ApplicationLoader.class.getSimpleName();
+
+    /* small first batch so that something is on screen within a frame, larger ones afterwards */
+    public static final int FIRST_BATCH_SIZE = 12;
+    public static final int BATCH_SIZE = 48;
+
+    public static final int POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    public interface Listener {
+
+        /**
+         * Called on the main thread, the batch is sorted and replaces entries of the same packages.
+         */
+        void onBatchLoaded(List<ApplicationInfo> batch);
+
+        /**
+         * Called on the main thread with packages that are no longer installed.
+         */
+        void onApplicationsRemoved(Set<String> packageNames);
+
+        /**
+         * Called on the main thread once every batch has been delivered.
+         */
+        void onLoadFinished();
+
+    }
+
+    private final Context context;
+    private final RotationSharedPreferences preferences;
+    private final ApplicationCache cache;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newFixedThreadPool(POOL_SIZE);
+
+    private volatile boolean cancelled = false;
+
+    public ApplicationLoader(Context context, RotationSharedPreferences preferences, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.preferences = preferences;
+        this.cache = new ApplicationCache(this.context);
+        this.listener = listener;
+    }
+
+    public void start() {
+        executor.execute(this::dispatch);
+    }
+
+    /**
+     * Reload a single package, or report it removed when it is no longer installed.
+     */
+    public void refresh(String packageName) {
+        if (cancelled || IgnoredPackages.isIgnored(packageName)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            PackageInfo packageInfo;
+            try {
+                packageInfo = context.getPackageManager().getPackageInfo(packageName, 0);
+            } catch (PackageManager.NameNotFoundException __) {
+                cache.remove(packageName);
+                cache.save();
+                post(() -> listener.onApplicationsRemoved(Collections.singleton(packageName)));
+                return;
+            }
+
+            List<ApplicationInfo> loaded = load(Collections.singletonList(packageInfo));
+            cache.save();
+            post(() -> listener.onBatchLoaded(loaded));
+        });
+    }
+
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+    }
+
+    private void dispatch() {
+        Map<String, ApplicationCache.Entry> cached = new HashMap<>();
+        for (ApplicationCache.Entry entry : cache.load()) {
+            cached.put(entry.getPackageName(), entry);
+        }
+
+        deliverCached(cached.values());
+
+        List<PackageInfo> installed = context.getPackageManager().getInstalledPackages(0);
+        Set<String> removed = new HashSet<>(cached.keySet());
+
+        List<List<PackageInfo>> batches = new ArrayList<>();
+        List<PackageInfo> batch = new ArrayList<>(FIRST_BATCH_SIZE);
+
+        for (PackageInfo packageInfo : installed) {
+            String packageName = packageInfo.packageName;
+            if (IgnoredPackages.isIgnored(packageName) || packageInfo.applicationInfo == null) {
+                continue;
+            }
+
+            removed.remove(packageName);
+
+            ApplicationCache.Entry entry = cached.get(packageName);
+            if (entry != null && entry.getLastUpdateTime() == packageInfo.lastUpdateTime) {
+                continue;
+            }
+
+            batch.add(packageInfo);
+
+            if (batch.size() == (batches.isEmpty() ? FIRST_BATCH_SIZE : BATCH_SIZE)) {
+                batches.add(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+
+        if (!removed.isEmpty()) {
+            for (String packageName : removed) {
+                cache.remove(packageName);
+            }
+            post(() -> listener.onApplicationsRemoved(removed));
+        }
+
+        Log.i(TAG, String.format("loading applications - installed=%d cached=%d stale batches=%d removed=%d pool=%d", installed.size(), cached.size(), batches.size(), removed.size(), POOL_SIZE));
+
+        if (batches.isEmpty()) {
+            cache.save();
+            post(listener::onLoadFinished);
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(batches.size());
+        for (List<PackageInfo> packageInfos : batches) {
+            executor.execute(() -> {
+                List<ApplicationInfo> loaded = load(packageInfos);
+
+                post(() -> listener.onBatchLoaded(loaded));
+                if (remaining.decrementAndGet() == 0) {
+                    cache.save();
+                    post(listener::onLoadFinished);
+                }
+            });
+        }
+    }
+
+    /**
+     * Deliver the cached entries in display order, decoding their icons one batch at a time.
+     */
+    private void deliverCached(Collection<ApplicationCache.Entry> entries) {
+        List<ApplicationInfo> applications = new ArrayList<>(entries.size());
+        Map<String, ApplicationCache.Entry> byPackage = new HashMap<>();
+
+        for (ApplicationCache.Entry entry : entries) {
+            applications.add(new ApplicationInfo(entry.getPackageName(), entry.getLabel(), null, null, entry.isSystem()));
+            byPackage.put(entry.getPackageName(), entry);
+        }
+
+        Collections.sort(applications);
+
+        int start = 0;
+        while (start < applications.size() && !cancelled) {
+            int end = Math.min(applications.size(), start + (start == 0 ? FIRST_BATCH_SIZE : BATCH_SIZE));
+            List<ApplicationInfo> batch = new ArrayList<>(applications.subList(start, end));
+
+            for (ApplicationInfo application : batch) {
+                String packageName = application.getPackageName();
+
+                application.setIcon(cache.decodeIcon(byPackage.get(packageName)));
+                application.setCurrentMode(preferences.getApplicationMode(packageName));
+            }
+
+            post(() -> listener.onBatchLoaded(batch));
+            start = end;
+        }
+    }
+
+    private List<ApplicationInfo> load(List<PackageInfo> packageInfos) {
+        PackageManager packageManager = context.getPackageManager();
+        List<ApplicationInfo> applications = new ArrayList<>(packageInfos.size());
+
+        for (PackageInfo packageInfo : packageInfos) {
+            if (cancelled) {
+                break;
+            }
+
+            android.content.pm.ApplicationInfo info = packageInfo.applicationInfo;
+            String packageName = packageInfo.packageName;
+            String displayName = info.loadLabel(packageManager).toString();
+            Drawable icon = info.loadIcon(packageManager);
+            RotationMode currentMode = preferences.getApplicationMode(packageName);
+            boolean isSystem = (info.flags & android.content.pm.ApplicationInfo.FLAG_SYSTEM) != 0;
+
+            if (displayName.equals(packageName)) {
+                displayName = null;
+            }
+
+            cache.put(packageName, displayName, isSystem, packageInfo.lastUpdateTime, icon);
+            applications.add(new ApplicationInfo(packageName, displayName, icon, currentMode, isSystem));
+        }
+
+        Collections.sort(applications);
+        return applications;
+    }
+    private void post(Runnable runnable) {
+        handler.post(() -> {
+            if (!cancelled) {
+                runnable.run();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,423 @@
+package com.rotation.controller;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ranked search over the presets application list.
+ * <p>
+ * Built once per list content: a sorted word table (label words, camel case parts and package segments)
+ * answers prefix queries by binary search, bigram postings narrow substring candidates, and acronyms are
+ * precomputed. Only when those leave few results is the remaining list scanned for fuzzy matches
+ * (subsequence, or one typo on a word prefix). Results are ranked exact prefix &gt; word start (or
+ * acronym) &gt; substring &gt; fuzzy, and keep the list order within a rank.
+ */
+public class ApplicationSearchIndex {
+
+    public static final int SCORE_NONE = 0;
+    public static final int SCORE_FUZZY = 1;
+    public static final int SCORE_SUBSTRING = 2;
+    public static final int SCORE_WORD_START = 3;
+    public static final int SCORE_PREFIX = 4;
+
+    /* typos are only tolerated on queries long enough to be meaningful */
+    public static final int TYPO_MIN_LENGTH = 4;
+
+    /* skip the fuzzy scan when the exact tiers already found this many applications */
+    public static final int FUZZY_SCAN_THRESHOLD = 20;
+
+    private final List<ApplicationInfo> applications;
+    private final String[] labels;
+    private final String[] keys;
+    private final String[] acronyms;
+    private final String[][] applicationWords;
+
+    private final String[] words;
+    private final int[] wordOwners;
+
+    private final Map<Integer, BitSet> bigrams = new HashMap<>();
+
+    public ApplicationSearchIndex(List<ApplicationInfo> applications) {
+        int size = applications.size();
+
+        this.applications = applications;
+        this.labels = new String[size];
+        this.keys = new String[size];
+        this.acronyms = new String[size];
+        this.applicationWords = new String[size][];
+
+        List<String> allWords = new ArrayList<>();
+        List<Integer> allOwners = new ArrayList<>();
+
+        for (int index = 0; index < size; index++) {
+            ApplicationInfo application = applications.get(index);
+            String displayName = application.getDisplayName();
+
+            keys[index] = application.getSearchKey();
+            labels[index] = normalize(displayName != null ? displayName : application.getPackageName());
+
+            List<String> tokens = new ArrayList<>();
+            StringBuilder acronym = new StringBuilder();
+
+            if (displayName != null) {
+                tokenize(displayName, tokens, acronym);
+            }
+            for (String segment : application.getPackageName().split("\\.")) {
+                if (!segment.isEmpty()) {
+                    tokens.add(segment.toLowerCase(Locale.ROOT));
+                }
+            }
+
+            acronyms[index] = acronym.toString();
+            applicationWords[index] = tokens.toArray(new String[0]);
+
+            for (String token : tokens) {
+                allWords.add(token);
+                allOwners.add(index);
+            }
+
+            String key = keys[index];
+            for (int position = 0; position + 1 < key.length(); position++) {
+                int bigram = bigram(key.charAt(position), key.charAt(position + 1));
+
+                BitSet owners = bigrams.get(bigram);
+                if (owners == null) {
+                    owners = new BitSet(size);
+                    bigrams.put(bigram, owners);
+                }
+                owners.set(index);
+            }
+        }
+
+        Integer[] order = new Integer[allWords.size()];
+        for (int index = 0; index < order.length; index++) {
+            order[index] = index;
+        }
+        Arrays.sort(order, (left, right) -> allWords.get(left).compareTo(allWords.get(right)));
+
+        words = new String[order.length];
+        wordOwners = new int[order.length];
+        for (int index = 0; index < order.length; index++) {
+            words[index] = allWords.get(order[index]);
+            wordOwners[index] = allOwners.get(order[index]);
+        }
+    }
+
+    public int size() {
+        return applications.size();
+    }
+
+    public ApplicationInfo get(int index) {
+        return applications.get(index);
+    }
+
+    static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param query    normalized query (see {@link #normalize})
+     * @param restrict when set, only these application indexes are considered
+     */
+    public Result search(String query, boolean showSystem, @Nullable BitSet restrict) {
+        int size = applications.size();
+        byte[] scores = new byte[size];
+
+        if (query.isEmpty()) {
+            Arrays.fill(scores, (byte) SCORE_PREFIX);
+            return new Result(collect(scores, showSystem, restrict), true);
+        }
+
+        /* only the matches that end up in the result count towards the threshold */
+        int found = 0;
+
+        /* word starts, by binary search on the sorted word table */
+        int start = lowerBound(query);
+        for (int index = start; index < words.length && words[index].startsWith(query); index++) {
+            int owner = wordOwners[index];
+            if (raise(scores, owner, labels[owner].startsWith(query) ? SCORE_PREFIX : SCORE_WORD_START) && isVisible(owner, showSystem, restrict)) {
+                found++;
+            }
+        }
+
+        for (int index = 0; index < size; index++) {
+            if (acronyms[index].startsWith(query) && raise(scores, index, SCORE_WORD_START) && isVisible(index, showSystem, restrict)) {
+                found++;
+            }
+        }
+
+        /* substrings, candidates from the bigram postings */
+        BitSet candidates = substringCandidates(query);
+        for (int index = candidates.nextSetBit(0); index >= 0; index = candidates.nextSetBit(index + 1)) {
+            if (keys[index].contains(query) && raise(scores, index, SCORE_SUBSTRING) && isVisible(index, showSystem, restrict)) {
+                found++;
+            }
+        }
+
+        boolean complete = found < FUZZY_SCAN_THRESHOLD;
+        if (complete) {
+            for (int index = restrict != null ? restrict.nextSetBit(0) : 0; index >= 0 && index < size; index = restrict != null ? restrict.nextSetBit(index + 1) : index + 1) {
+                if (scores[index] == SCORE_NONE && isFuzzyMatch(query, index)) {
+                    scores[index] = SCORE_FUZZY;
+                }
+            }
+        }
+
+        return new Result(collect(scores, showSystem, restrict), complete);
+    }
+
+    private boolean isVisible(int index, boolean showSystem, @Nullable BitSet restrict) {
+        return (restrict == null || restrict.get(index)) && (showSystem || !applications.get(index).isSystem());
+    }
+
+    private BitSet substringCandidates(String query) {
+        if (query.length() < 2) {
+            BitSet all = new BitSet(applications.size());
+            all.set(0, applications.size());
+            return all;
+        }
+
+        BitSet candidates = null;
+        for (int position = 0; position + 1 < query.length(); position++) {
+            BitSet owners = bigrams.get(bigram(query.charAt(position), query.charAt(position + 1)));
+            if (owners == null) {
+                return new BitSet();
+            }
+
+            if (candidates == null) {
+                candidates = (BitSet) owners.clone();
+            } else {
+                candidates.and(owners);
+            }
+        }
+
+        return candidates;
+    }
+
+    private boolean isFuzzyMatch(String query, int index) {
+        if (isSubsequence(query, labels[index]) || isSubsequence(query, acronyms[index])) {
+            return true;
+        }
+
+        if (query.length() < TYPO_MIN_LENGTH) {
+            return false;
+        }
+
+        for (String word : applicationWords[index]) {
+            if (isWithinOneTypo(query, word)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int[] collect(byte[] scores, boolean showSystem, @Nullable BitSet restrict) {
+        int[] result = new int[scores.length];
+        int count = 0;
+
+        for (int score = SCORE_PREFIX; score > SCORE_NONE; score--) {
+            for (int index = 0; index < scores.length; index++) {
+                if (scores[index] != score) {
+                    continue;
+                }
+
+                if (isVisible(index, showSystem, restrict)) {
+                    result[count++] = index;
+                }
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    private int lowerBound(String query) {
+        int low = 0;
+        int high = words.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (words[middle].compareTo(query) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @return whether the application was not matched by any tier before
+     */
+    private static boolean raise(byte[] scores, int index, int score) {
+        if (scores[index] >= score) {
+            return false;
+        }
+
+        boolean added = scores[index] == SCORE_NONE;
+        scores[index] = (byte) score;
+
+        return added;
+    }
+
+    private static int bigram(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    /**
+     * Split a label into lowercase words on non letter-or-digit characters and camel case boundaries,
+     * collecting the initial of every word.
+     */
+    static void tokenize(String label, List<String> tokens, StringBuilder acronym) {
+        StringBuilder word = new StringBuilder();
+        char previous = 0;
+
+        for (int index = 0; index < label.length(); index++) {
+            char character = label.charAt(index);
+
+            boolean boundary = !Character.isLetterOrDigit(character)
+                    || (Character.isUpperCase(character) && Character.isLowerCase(previous));
+
+            if (boundary && word.length() > 0) {
+                tokens.add(word.toString().toLowerCase(Locale.ROOT));
+                word.setLength(0);
+            }
+
+            if (Character.isLetterOrDigit(character)) {
+                if (word.length() == 0) {
+                    acronym.append(Character.toLowerCase(character));
+                }
+                word.append(character);
+            }
+
+            previous = character;
+        }
+
+        if (word.length() > 0) {
+            tokens.add(word.toString().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    static boolean isSubsequence(String query, String text) {
+        int position = 0;
+
+        for (int index = 0; index < text.length() && position < query.length(); index++) {
+            if (text.charAt(index) == query.charAt(position)) {
+                position++;
+            }
+        }
+
+        return position == query.length();
+    }
+
+    /**
+     * Whether the query matches the start of the word with at most one substituted, missing, extra or
+     * swapped character.
+     */
+    static boolean isWithinOneTypo(String query, String word) {
+        int length = query.length();
+
+        /* substitution or adjacent swap against a prefix of the same length */
+        if (word.length() >= length) {
+            int mismatch = -1;
+            int mismatches = 0;
+
+            for (int index = 0; index < length && mismatches <= 2; index++) {
+                if (query.charAt(index) != word.charAt(index)) {
+                    if (mismatches == 0) {
+                        mismatch = index;
+                    }
+                    mismatches++;
+                }
+            }
+
+            if (mismatches <= 1) {
+                return true;
+            }
+
+            if (mismatches == 2 && mismatch + 1 < length
+                    && query.charAt(mismatch) == word.charAt(mismatch + 1)
+                    && query.charAt(mismatch + 1) == word.charAt(mismatch)) {
+                return true;
+            }
+        }
+
+        /* one extra character in the query */
+        if (word.length() >= length - 1) {
+            for (int skip = 0; skip < length; skip++) {
+                if (matchesSkipping(query, skip, word)) {
+                    return true;
+                }
+            }
+        }
+
+        /* one character missing from the query */
+        if (word.length() >= length + 1) {
+            for (int skip = 0; skip <= length; skip++) {
+                if (matchesSkipping(word, skip, query, length)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /* query without the character at skip equals the start of the word */
+    private static boolean matchesSkipping(String query, int skip, String word) {
+        int position = 0;
+
+        for (int index = 0; index < query.length(); index++) {
+            if (index == skip) {
+                continue;
+            }
+
+            if (word.charAt(position++) != query.charAt(index)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /* the first length + 1 characters of the word, without the one at skip, equal the query */
+    private static boolean matchesSkipping(String word, int skip, String query, int length) {
+        int position = 0;
+
+        for (int index = 0; index <= length; index++) {
+            if (index == skip) {
+                continue;
+            }
+
+            if (word.charAt(index) != query.charAt(position++)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Result {
+
+        /* the matching application indexes, best first */
+        private final int[] matches;
+
+        /* whether every tier ran, so a longer query can be searched among these matches only */
+        private final boolean complete;
+
+    }
+
+}
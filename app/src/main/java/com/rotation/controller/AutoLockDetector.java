@@ -0,0 +1,142 @@
+package com.rotation.controller;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import lombok.Getter;
+
+/**
+ * Reports once the display rotation has been stable for a given time.
+ * <p>
+ * Fed with the stream of actual rotation changes. A rotation only counts as a new stable candidate
+ * once it held for {@link #HYSTERESIS_MILLISECOND}, so flipping to another rotation and back (e.g. the
+ * device briefly tilted) neither restarts nor extends the wait.
+ */
+public class AutoLockDetector {
+
+    public static final String TAG = AutoLockDetector.class.getSimpleName();
+
+    public static final long HYSTERESIS_MILLISECOND = 1000;
+
+    public interface Listener {
+
+        /**
+         * Called on the handler thread, after which the detector is disarmed.
+         */
+        void onStable(int rotation);
+
+    }
+
+    private final Handler handler;
+    private final Listener listener;
+
+    private final Runnable mFire = new Runnable() {
+        @Override
+        public void run() {
+            fire();
+        }
+    };
+
+    private final Runnable mSettleExcursion = new Runnable() {
+        @Override
+        public void run() {
+            settleExcursion();
+        }
+    };
+
+    private @Getter boolean armed = false;
+    private long stableMillis;
+
+    private int stableRotation = DisplayRotationTracker.UNKNOWN;
+    private long stableSinceUptime;
+
+    private int excursionRotation = DisplayRotationTracker.UNKNOWN;
+    private long excursionSinceUptime;
+
+    public AutoLockDetector(Handler handler, Listener listener) {
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /**
+     * Start waiting for the rotation to be stable, unless already waiting for the same duration.
+     */
+    public void arm(int rotation, long stableMillis) {
+        if (armed && this.stableMillis == stableMillis) {
+            return;
+        }
+
+        disarm();
+
+        this.armed = true;
+        this.stableMillis = stableMillis;
+        this.stableRotation = rotation;
+        this.stableSinceUptime = SystemClock.uptimeMillis();
+
+        Log.d(TAG, String.format("armed - rotation=%d stableMillis=%d", rotation, stableMillis));
+        scheduleFire();
+    }
+
+    public void disarm() {
+        handler.removeCallbacks(mFire);
+        handler.removeCallbacks(mSettleExcursion);
+
+        armed = false;
+        excursionRotation = DisplayRotationTracker.UNKNOWN;
+    }
+
+    public void onRotationChanged(int rotation) {
+        if (!armed) {
+            return;
+        }
+
+        if (rotation == stableRotation) {
+            if (excursionRotation != DisplayRotationTracker.UNKNOWN) {
+                Log.d(TAG, String.format("ignored excursion - rotation=%d", excursionRotation));
+
+                handler.removeCallbacks(mSettleExcursion);
+                excursionRotation = DisplayRotationTracker.UNKNOWN;
+
+                /* the stable period may have ended while away */
+                scheduleFire();
+            }
+
+            return;
+        }
+
+        excursionRotation = rotation;
+        excursionSinceUptime = SystemClock.uptimeMillis();
+
+        handler.removeCallbacks(mSettleExcursion);
+        handler.postAtTime(mSettleExcursion, excursionSinceUptime + HYSTERESIS_MILLISECOND);
+    }
+
+    private void settleExcursion() {
+        stableRotation = excursionRotation;
+        stableSinceUptime = excursionSinceUptime;
+        excursionRotation = DisplayRotationTracker.UNKNOWN;
+
+        Log.d(TAG, String.format("new stable candidate - rotation=%d", stableRotation));
+        scheduleFire();
+    }
+
+    private void scheduleFire() {
+        handler.removeCallbacks(mFire);
+        handler.postAtTime(mFire, stableSinceUptime + stableMillis);
+    }
+
+    private void fire() {
+        if (excursionRotation != DisplayRotationTracker.UNKNOWN) {
+            /* decided once the excursion settles or reverts */
+            return;
+        }
+
+        int rotation = stableRotation;
+        disarm();
+
+        Log.i(TAG, String.format("rotation stable - rotation=%d", rotation));
+        listener.onStable(rotation);
+    }
+
+}
@@ -3,11 +3,8 @@ package com.rotation.controller;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.util.Log;
 
-import androidx.preference.PreferenceManager;
-
 public class BootBroadcastReceiver extends BroadcastReceiver {
 
     private static final String TAG = BootBroadcastReceiver.class.getSimpleName();
@@ -18,8 +15,7 @@ public class BootBroadcastReceiver extends BroadcastReceiver {
             return;
         }
 
-        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
-        boolean startOnBoot = sharedPreferences.getBoolean(context.getString(R.string.start_on_boot_key), false);
+        boolean startOnBoot = RotationConfig.get(context).isStartOnBoot();
 
         Log.i(TAG, String.format("Received Boot, start on boot? %s", startOnBoot));
 
@@ -0,0 +1,125 @@
+package com.rotation.controller;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Sequenced queue of pending service commands.
+ * <p>
+ * Commands offered back-to-back are folded as they arrive: a newer command drops the one it supersedes
+ * (e.g. an intermediate mode change), and two toggles of the same switch cancel each other out.
+ * The remaining commands are drained in order once per frame by {@link RotationService}.
+ */
+public class CommandQueue {
+
+    private final ArrayDeque<Command> commands = new ArrayDeque<>();
+
+    private long nextSequence = 1;
+    private @Getter int droppedCount = 0;
+
+    public long offer(String action, @Nullable String newMode) {
+        long sequence = nextSequence++;
+
+        Command last = commands.peekLast();
+        if (last != null) {
+            if (cancels(action, last.getAction())) {
+                commands.pollLast();
+                droppedCount += 2;
+                return sequence;
+            }
+
+            if (supersedes(action, last.getAction())) {
+                commands.pollLast();
+                droppedCount++;
+            }
+        }
+
+        commands.addLast(new Command(sequence, action, newMode));
+        return sequence;
+    }
+
+    public List<Command> drain() {
+        List<Command> drained = new ArrayList<>(commands);
+        commands.clear();
+        droppedCount = 0;
+
+        return drained;
+    }
+
+    public void clear() {
+        commands.clear();
+        droppedCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    static boolean cancels(String action, String previousAction) {
+        if (!action.equals(previousAction)) {
+            return false;
+        }
+
+        return RotationService.ACTION_TOGGLE_POWER.equals(action)
+                || RotationService.ACTION_CHANGE_GUARD.equals(action);
+    }
+
+    static boolean supersedes(String action, String previousAction) {
+        if (isPresetsAction(action) && isPresetsAction(previousAction)) {
+            /* the last presets command alone yields the same (activeMode, previousActiveMode) pair */
+            return true;
+        }
+
+        if (isReloadAction(action) && isReloadAction(previousAction)) {
+            return true;
+        }
+
+        if (!action.equals(previousAction)) {
+            return false;
+        }
+
+        switch (action) {
+            case RotationService.ACTION_START:
+            case RotationService.ACTION_CHANGE_MODE:
+            case RotationService.ACTION_ORIENTATION_CHANGED:
+            case RotationService.ACTION_REFRESH_NOTIFICATION:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isPresetsAction(String action) {
+        return RotationService.ACTION_PRESETS_UPDATE.equals(action)
+                || RotationService.ACTION_PRESETS_RESTORE.equals(action);
+    }
+
+    private static boolean isReloadAction(String action) {
+        return RotationService.ACTION_CONFIGURATION_CHANGED.equals(action)
+                || RotationService.ACTION_REFRESH_MODE.equals(action);
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class Command {
+
+        private final long sequence;
+        private final String action;
+        private final @Nullable String newMode;
+
+    }
+
+}
@@ -1,50 +1,436 @@
 package com.rotation.controller;
 
 import android.content.Context;
-import android.os.Environment;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
+/**
+ * File logger that never touches the disk on the caller thread.
+ * <p>
+ * Entries are pushed into a bounded lock-free ring buffer and written in batches by a single background
+ * thread through one long-lived {@link FileChannel}. Files are rotated by size. Calls below the minimum
+ * {@link Level} return immediately, and the caller location is only captured when explicitly enabled.
+ */
 public class DebugLogger {
 
     private static final String TAG = "RotationDebug";
-    private static final String FILE_NAME = "rotation_debug_log.txt";
-
-    public static void log(Context context, String message) {
-        try {
-            String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US).format(new Date());
-            
-            // Get caller stack trace
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            String caller = "";
-            if (stackTrace.length >= 4) {
-                StackTraceElement element = stackTrace[3];
-                caller = element.getClassName().substring(element.getClassName().lastIndexOf('.') + 1) + "." + element.getMethodName() + ":" + element.getLineNumber();
-            }
-
-            String formattedMessage = String.format("[%s] [%s] %s", timestamp, caller, message);
-
-            // Log to Logcat
-            Log.i(TAG, formattedMessage);
-
-            // Log to File
-            if (context != null) {
-                File logFile = new File(context.getExternalFilesDir(null), FILE_NAME);
-                try (FileOutputStream fos = new FileOutputStream(logFile, true);
-                     PrintWriter pw = new PrintWriter(fos)) {
-                    pw.println(formattedMessage);
-                    pw.flush();
+
+    public static final String FILE_NAME = "rotation_debug_log.txt";
+    public static final long MAX_FILE_SIZE = 1024 * 1024;
+    public static final int MAX_ROTATED_FILES = 3;
+
+    private static final int BUFFER_CAPACITY = 1024;
+    private static final int BATCH_SIZE = 128;
+    private static final long IDLE_PARK_NANOSECOND = 500_000_000L;
+
+    @RequiredArgsConstructor
+    public enum Level {
+
+        VERBOSE(Log.VERBOSE, 'V'),
+        DEBUG(Log.DEBUG, 'D'),
+        INFO(Log.INFO, 'I'),
+        WARN(Log.WARN, 'W'),
+        ERROR(Log.ERROR, 'E');
+
+        private final int priority;
+        private final @Getter char letter;
+
+    }
+
+    private static volatile Level minLevel = Level.INFO;
+    private static volatile boolean captureCaller = false;
+    private static volatile boolean configured = false;
+    private static volatile Writer writer;
+
+    private DebugLogger() {
+    }
+
+    public static boolean isLoggable(Level level) {
+        return level.ordinal() >= minLevel.ordinal();
+    }
+
+    /**
+     * Applied by {@link RotationConfig} whenever the configuration is built.
+     */
+    public static void configure(Level level, boolean captureCallerEnabled) {
+        minLevel = level;
+        captureCaller = captureCallerEnabled;
+        configured = true;
+    }
+
+    public static void log(@Nullable Context context, String message) {
+        log(context, Level.INFO, TAG, message);
+    }
+
+    /**
+     * Without a context (a detached fragment) entries go to logcat until a writer exists, and the
+     * level stays the default one until a later entry can load the configuration.
+     */
+    public static void log(@Nullable Context context, Level level, String tag, String message) {
+        if (!configured && context != null) {
+            /* the first entry of the process loads the configured level */
+            RotationConfig.get(context);
+        }
+
+        if (!isLoggable(level)) {
+            return;
+        }
+
+        String caller = captureCaller ? findCaller() : null;
+        Entry entry = new Entry(System.currentTimeMillis(), level, tag, caller, message);
+
+        Writer current = getWriter(context);
+        if (current == null) {
+            Log.println(level.priority, TAG, format(null, entry));
+            return;
+        }
+
+        current.enqueue(entry);
+    }
+
+    /**
+     * Wait (at most {@code timeoutMillis}) for everything logged so far to reach the file.
+     */
+    public static void flush(long timeoutMillis) {
+        Writer current = writer;
+        if (current != null) {
+            current.awaitDrained(timeoutMillis);
+        }
+    }
+
+    public static int getDroppedCount() {
+        Writer current = writer;
+        return current != null ? current.dropped.get() : 0;
+    }
+
+    /**
+     * The current log file followed by its rotated predecessors, newest first.
+     */
+    public static List<File> getLogFiles(Context context) {
+        List<File> files = new ArrayList<>();
+
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            return files;
+        }
+
+        for (int index = 0; index <= MAX_ROTATED_FILES; index++) {
+            File file = getLogFile(directory, index);
+            if (file.exists()) {
+                files.add(file);
+            }
+        }
+
+        return files;
+    }
+
+    static File getLogFile(File directory, int index) {
+        if (index == 0) {
+            return new File(directory, FILE_NAME);
+        }
+
+        return new File(directory, FILE_NAME + "." + index);
+    }
+
+    @Nullable
+    private static Writer getWriter(@Nullable Context context) {
+        Writer current = writer;
+        if (current != null || context == null) {
+            return current;
+        }
+
+        synchronized (DebugLogger.class) {
+            if (writer == null) {
+                writer = new Writer(context.getApplicationContext());
+                writer.start();
+            }
+
+            return writer;
+        }
+    }
+
+    private static String findCaller() {
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+
+        for (StackTraceElement element : stackTrace) {
+            String className = element.getClassName();
+            if (className.equals(DebugLogger.class.getName())) {
+                continue;
+            }
+
+            return className.substring(className.lastIndexOf('.') + 1) + "." + element.getMethodName() + ":" + element.getLineNumber();
+        }
+
+        return "";
+    }
+
+    private static String format(@Nullable SimpleDateFormat dateFormat, Entry entry) {
+        StringBuilder builder = new StringBuilder(64 + entry.message.length());
+
+        if (dateFormat != null) {
+            builder.append('[').append(dateFormat.format(new Date(entry.timestamp))).append("] ");
+        }
+
+        builder.append('[').append(entry.level.letter).append("] ");
+        builder.append('[').append(entry.tag).append("] ");
+        builder.append('[').append(entry.caller != null ? entry.caller : "").append("] ");
+        builder.append(entry.message);
+
+        return builder.toString();
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+
+        private final long timestamp;
+        private final Level level;
+        private final String tag;
+        private final @Nullable String caller;
+        private final String message;
+
+    }
+
+    /**
+     * Bounded multi-producer single-consumer ring buffer, each slot carries a sequence number telling
+     * whether it is free for the producer at that position or ready for the consumer.
+     */
+    static class RingBuffer<T> {
+
+        private final AtomicReferenceArray<T> slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private volatile long tail = 0;
+
+        RingBuffer(int capacity) {
+            if (Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("capacity must be a power of two");
+            }
+
+            slots = new AtomicReferenceArray<>(capacity);
+            sequences = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+
+            for (int index = 0; index < capacity; index++) {
+                sequences.set(index, index);
+            }
+        }
+
+        boolean offer(T value) {
+            while (true) {
+                long position = head.get();
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+
+                if (difference == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        slots.lazySet(index, value);
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                } else if (difference < 0) {
+                    return false;
                 }
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to write to log file", e);
         }
+
+        /* single consumer only */
+        @Nullable
+        T poll() {
+            long position = tail;
+            int index = (int) (position & mask);
+
+            if (sequences.get(index) != position + 1) {
+                return null;
+            }
+
+            T value = slots.get(index);
+            slots.lazySet(index, null);
+            sequences.set(index, position + mask + 1);
+            tail = position + 1;
+
+            return value;
+        }
+
+        boolean isEmpty() {
+            return head.get() == tail;
+        }
+
     }
+
+    private static class Writer extends Thread {
+
+        private final Context context;
+        private final RingBuffer<Entry> buffer = new RingBuffer<>(BUFFER_CAPACITY);
+        private final AtomicInteger dropped = new AtomicInteger();
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        private final StringBuilder batch = new StringBuilder(16 * 1024);
+
+        private @Nullable File directory;
+        private @Nullable FileChannel channel;
+        private int reportedDropped = 0;
+
+        Writer(Context context) {
+            super("DebugLogger");
+            this.context = context;
+
+            setDaemon(true);
+            setPriority(Thread.MIN_PRIORITY);
+        }
+
+        void enqueue(Entry entry) {
+            if (!buffer.offer(entry)) {
+                dropped.incrementAndGet();
+            }
+
+            LockSupport.unpark(this);
+        }
+
+        void awaitDrained(long timeoutMillis) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+
+            while (!buffer.isEmpty() && System.currentTimeMillis() < deadline) {
+                LockSupport.unpark(this);
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int count = drain();
+
+                if (count == 0) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOSECOND);
+                }
+            }
+        }
+
+        private int drain() {
+            batch.setLength(0);
+
+            int count = 0;
+            Entry entry;
+            while (count < BATCH_SIZE && (entry = buffer.poll()) != null) {
+                String line = format(dateFormat, entry);
+                Log.println(entry.level.priority, TAG, line);
+
+                batch.append(line).append('\n');
+                count++;
+            }
+
+            int droppedNow = dropped.get();
+            if (droppedNow != reportedDropped) {
+                batch.append(String.format(Locale.US, "[%s] [W] [%s] [] dropped %d entries, buffer full\n", dateFormat.format(new Date()), TAG, droppedNow - reportedDropped));
+                reportedDropped = droppedNow;
+            }
+
+            if (batch.length() > 0) {
+                write(batch);
+            }
+
+            return count;
+        }
+
+        private void write(CharSequence text) {
+            try {
+                FileChannel current = openChannel();
+                if (current == null) {
+                    return;
+                }
+
+                ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    current.write(bytes);
+                }
+
+                if (current.size() >= MAX_FILE_SIZE) {
+                    rotate();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write to log file", e);
+                closeChannel();
+            }
+        }
+
+        @Nullable
+        private FileChannel openChannel() throws IOException {
+            if (channel != null) {
+                return channel;
+            }
+
+            if (directory == null) {
+                directory = context.getExternalFilesDir(null);
+                if (directory == null) {
+                    return null;
+                }
+            }
+
+            channel = FileChannel.open(
+                    getLogFile(directory, 0).toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND
+            );
+
+            return channel;
+        }
+
+        private void rotate() {
+            closeChannel();
+
+            if (directory == null) {
+                return;
+            }
+
+            File oldest = getLogFile(directory, MAX_ROTATED_FILES);
+            if (oldest.exists() && !oldest.delete()) {
+                Log.w(TAG, "Failed to delete " + oldest);
+            }
+
+            for (int index = MAX_ROTATED_FILES - 1; index >= 0; index--) {
+                File file = getLogFile(directory, index);
+                if (file.exists() && !file.renameTo(getLogFile(directory, index + 1))) {
+                    Log.w(TAG, "Failed to rotate " + file);
+                }
+            }
+        }
+
+        private void closeChannel() {
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close log file", e);
+            }
+
+            channel = null;
+        }
+
+    }
+
 }
@@ -0,0 +1,285 @@
+package com.rotation.controller;
+
+import android.annotation.SuppressLint;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.HorizontalScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.RequiredArgsConstructor;
+
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    public static final String TAG = DiagnosticsActivity.class.getSimpleName();
+
+    public static final int PAGE_SIZE = 200;
+    public static final int LOAD_MORE_THRESHOLD = 50;
+    public static final long FILTER_DELAY_MILLISECOND = 250;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<String> lines = new ArrayList<>();
+
+    private final Runnable applyFilter = new Runnable() {
+        @Override
+        public void run() {
+            reload(filterView.getText().toString());
+        }
+    };
+
+    private EditText filterView;
+    private TextView emptyView;
+    private LogLineAdapter adapter;
+
+    private LogPager pager;
+    private int generation = 0;
+    private boolean loading = false;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.diagnostics_activity);
+
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+
+        filterView = findViewById(R.id.filter);
+        emptyView = findViewById(R.id.empty);
+
+        RecyclerView recyclerView = findViewById(R.id.list);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+
+        adapter = new LogLineAdapter(lines);
+        recyclerView.setAdapter(adapter);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (layoutManager.findLastVisibleItemPosition() >= lines.size() - LOAD_MORE_THRESHOLD) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        filterView.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable editable) {
+                handler.removeCallbacks(applyFilter);
+                handler.postDelayed(applyFilter, FILTER_DELAY_MILLISECOND);
+            }
+        });
+
+        reload(null);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        handler.removeCallbacks(applyFilter);
+
+        /* after any page still being read, the executor runs its queued tasks before shutting down */
+        LogPager last = pager;
+        executor.execute(() -> closePager(last));
+        executor.shutdown();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.diagnostics_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int itemId = item.getItemId();
+
+        if (itemId == android.R.id.home) {
+            getOnBackPressedDispatcher().onBackPressed();
+            return true;
+        }
+
+        if (itemId == R.id.action_export) {
+            export();
+            return true;
+        }
+
+        if (itemId == R.id.action_metrics) {
+            showMetrics();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    @SuppressLint("NotifyDataSetChanged")
+    private void reload(String filter) {
+        LogPager previous = pager;
+        executor.execute(() -> closePager(previous));
+
+        generation++;
+        loading = false;
+        pager = new LogPager(DebugLogger.getLogFiles(this), filter);
+
+        lines.clear();
+        adapter.notifyDataSetChanged();
+
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loading || pager.isExhausted()) {
+            return;
+        }
+
+        loading = true;
+
+        final LogPager current = pager;
+        final int expectedGeneration = generation;
+
+        executor.execute(() -> {
+            List<String> page;
+            try {
+                page = current.nextPage(PAGE_SIZE);
+            } catch (IOException e) {
+                Log.e(TAG, "failed to read log page", e);
+                page = new ArrayList<>();
+            }
+
+            final List<String> result = page;
+            runOnUiThread(() -> onPageLoaded(expectedGeneration, result));
+        });
+    }
+
+    private void onPageLoaded(int expectedGeneration, List<String> page) {
+        if (expectedGeneration != generation || isDestroyed()) {
+            return;
+        }
+
+        loading = false;
+
+        int start = lines.size();
+        lines.addAll(page);
+        adapter.notifyItemRangeInserted(start, page.size());
+
+        emptyView.setVisibility(lines.isEmpty() && pager.isExhausted() ? View.VISIBLE : View.GONE);
+    }
+
+    private void showMetrics() {
+        TextView view = new TextView(this);
+        view.setText(RotationMetrics.describe());
+        view.setTypeface(Typeface.MONOSPACE);
+        view.setTextIsSelectable(true);
+
+        int padding = Math.round(16 * getResources().getDisplayMetrics().density);
+        view.setPadding(padding, padding, padding, padding);
+
+        HorizontalScrollView scrollView = new HorizontalScrollView(this);
+        scrollView.addView(view);
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.diagnostics_metrics)
+                .setView(scrollView)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    private void export() {
+        Toast.makeText(this, R.string.diagnostics_exporting, Toast.LENGTH_SHORT).show();
+
+        executor.execute(() -> {
+            try {
+                File file = DiagnosticsExporter.export(getApplicationContext());
+                runOnUiThread(() -> startActivity(DiagnosticsExporter.newShareIntent(this, file)));
+            } catch (IOException e) {
+                Log.e(TAG, "failed to export diagnostics", e);
+                runOnUiThread(() -> Toast.makeText(this, R.string.diagnostics_export_failed, Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+
+    private static void closePager(LogPager pager) {
+        if (pager == null) {
+            return;
+        }
+
+        try {
+            pager.close();
+        } catch (IOException e) {
+            Log.w(TAG, "failed to close log pager", e);
+        }
+    }
+
+}
+
+@RequiredArgsConstructor
+class LogLineAdapter extends RecyclerView.Adapter<LogLineAdapter.ViewHolder> {
+
+    private final List<String> list;
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        TextView view = (TextView) LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.diagnostics_log_line, parent, false);
+
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        holder.text.setText(list.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return list.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+
+        private final TextView text;
+
+        public ViewHolder(TextView itemView) {
+            super(itemView);
+            text = itemView;
+        }
+    }
+
+}
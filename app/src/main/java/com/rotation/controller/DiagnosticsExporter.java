@@ -0,0 +1,116 @@
+package com.rotation.controller;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import androidx.core.content.FileProvider;
+import androidx.preference.PreferenceManager;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class DiagnosticsExporter {
+
+    public static final String EXPORT_DIRECTORY = "exports";
+    public static final String EXPORT_FILE_NAME = "rotation_diagnostics.zip";
+    public static final String STATE_FILE_NAME = "service_state.txt";
+
+    private static final long FLUSH_TIMEOUT_MILLISECOND = 500;
+
+    private DiagnosticsExporter() {
+    }
+
+    /**
+     * Zip every (rotated) log file and the last sensor trace together with a description of the current service state.
+     * Must not be called on the main thread.
+     */
+    public static File export(Context context) throws IOException {
+        DebugLogger.flush(FLUSH_TIMEOUT_MILLISECOND);
+
+        File directory = new File(context.getCacheDir(), EXPORT_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+
+        File output = new File(directory, EXPORT_FILE_NAME);
+        byte[] buffer = new byte[16 * 1024];
+
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            for (File file : DebugLogger.getLogFiles(context)) {
+                zip.putNextEntry(new ZipEntry(file.getName()));
+
+                try (InputStream input = new FileInputStream(file)) {
+                    copy(input, zip, buffer);
+                }
+
+                zip.closeEntry();
+            }
+
+            File sensorTrace = OrientationEngine.getTraceFile(context);
+            if (sensorTrace.isFile()) {
+                zip.putNextEntry(new ZipEntry(sensorTrace.getName()));
+
+                try (InputStream input = new FileInputStream(sensorTrace)) {
+                    copy(input, zip, buffer);
+                }
+
+                zip.closeEntry();
+            }
+
+            zip.putNextEntry(new ZipEntry(STATE_FILE_NAME));
+            zip.write(describeState(context).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        return output;
+    }
+
+    public static Intent newShareIntent(Context context, File file) {
+        Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", file);
+
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("application/zip");
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        return Intent.createChooser(intent, context.getString(R.string.diagnostics_export));
+    }
+
+    static String describeState(Context context) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("service.state=").append(ServiceRegistry.getState()).append('\n');
+        builder.append("service.enforcing=").append(ServiceRegistry.isEnforcing()).append('\n');
+        builder.append("logger.dropped=").append(DebugLogger.getDroppedCount()).append('\n');
+        builder.append('\n');
+
+        builder.append(RotationMetrics.describe());
+        builder.append('\n');
+
+        Map<String, ?> preferences = new TreeMap<>(PreferenceManager.getDefaultSharedPreferences(context).getAll());
+        for (Map.Entry<String, ?> entry : preferences.entrySet()) {
+            builder.append("preference.").append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private static void copy(InputStream input, OutputStream output, byte[] buffer) throws IOException {
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+}
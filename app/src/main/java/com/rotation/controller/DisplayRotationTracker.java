@@ -0,0 +1,91 @@
+package com.rotation.controller;
+
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Handler;
+import android.util.Log;
+import android.view.Display;
+
+/**
+ * Follows the rotation of the default display through a {@link DisplayManager.DisplayListener}, and
+ * only reports actual rotation changes (not every configuration change, e.g. locale or night mode).
+ */
+public class DisplayRotationTracker {
+
+    public static final String TAG = DisplayRotationTracker.class.getSimpleName();
+
+    public static final int UNKNOWN = -1;
+
+    public interface Listener {
+
+        /**
+         * Called on the handler thread.
+         */
+        void onRotationChanged(int rotation);
+
+    }
+
+    private final DisplayManager displayManager;
+    private final Handler handler;
+    private final Listener listener;
+    private final DisplayManager.DisplayListener displayListener;
+
+    private int rotation = UNKNOWN;
+
+    public DisplayRotationTracker(Context context, Handler handler, Listener listener) {
+        this.displayManager = (DisplayManager) context.getApplicationContext().getSystemService(Context.DISPLAY_SERVICE);
+        this.handler = handler;
+        this.listener = listener;
+
+        this.displayListener = new DisplayManager.DisplayListener() {
+            @Override
+            public void onDisplayAdded(int displayId) {
+            }
+
+            @Override
+            public void onDisplayRemoved(int displayId) {
+            }
+
+            @Override
+            public void onDisplayChanged(int displayId) {
+                if (displayId == Display.DEFAULT_DISPLAY) {
+                    onDisplayChanged();
+                }
+            }
+        };
+    }
+
+    public void register() {
+        rotation = readRotation();
+        displayManager.registerDisplayListener(displayListener, handler);
+    }
+
+    public void unregister() {
+        displayManager.unregisterDisplayListener(displayListener);
+        rotation = UNKNOWN;
+    }
+
+    /**
+     * @return the last known rotation, read from the display while not registered
+     */
+    public int getRotation() {
+        return rotation != UNKNOWN ? rotation : readRotation();
+    }
+
+    private void onDisplayChanged() {
+        int newRotation = readRotation();
+        if (newRotation == rotation || newRotation == UNKNOWN) {
+            return;
+        }
+
+        Log.d(TAG, String.format("rotation changed - old=%d new=%d", rotation, newRotation));
+        rotation = newRotation;
+        listener.onRotationChanged(newRotation);
+    }
+
+    private int readRotation() {
+        Display display = displayManager.getDisplay(Display.DEFAULT_DISPLAY);
+        return display != null ? display.getRotation() : UNKNOWN;
+    }
+
+}
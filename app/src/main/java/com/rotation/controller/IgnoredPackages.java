@@ -0,0 +1,25 @@
+package com.rotation.controller;
+
+/**
+ * Packages whose windows never get a preset, nor appear in the presets list.
+ */
+public class IgnoredPackages {
+
+    private static final String[] PREFIXES = {
+            "com.android.systemui"
+    };
+
+    private IgnoredPackages() {
+    }
+
+    public static boolean isIgnored(String packageName) {
+        for (String prefix : PREFIXES) {
+            if (packageName.startsWith(prefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
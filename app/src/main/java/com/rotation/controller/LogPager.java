@@ -0,0 +1,211 @@
+package com.rotation.controller;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import lombok.Getter;
+
+/**
+ * Reads log files backwards from their tail, one memory-mapped window at a time, so that only the
+ * requested page of lines is ever decoded. The files are expected newest first (see {@link DebugLogger#getLogFiles}).
+ * <p>
+ * Lines follow the {@link DebugLogger} format {@code [time] [L] [tag] [caller] message} and can be
+ * filtered on their tag or caller field.
+ */
+public class LogPager implements Closeable {
+
+    public static final int WINDOW_SIZE = 64 * 1024;
+
+    private final List<File> files;
+    private final @Nullable String filter;
+
+    private int fileIndex = 0;
+    private @Nullable FileChannel channel;
+    private long position = -1;
+
+    private @Nullable MappedByteBuffer window;
+    private long windowStart;
+
+    private @Getter boolean exhausted = false;
+
+    public LogPager(List<File> files, @Nullable String filter) {
+        this.files = files;
+        this.filter = filter == null || filter.isEmpty() ? null : filter.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return up to {@code maxLines} matching lines, newest first; empty once every file has been read
+     */
+    public List<String> nextPage(int maxLines) throws IOException {
+        List<String> lines = new ArrayList<>(maxLines);
+
+        while (lines.size() < maxLines && !exhausted) {
+            if (!ensureChannel()) {
+                break;
+            }
+
+            String line = readPreviousLine();
+            if (line == null) {
+                nextFile();
+                continue;
+            }
+
+            if (!line.isEmpty() && matches(line)) {
+                lines.add(line);
+            }
+        }
+
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private boolean ensureChannel() throws IOException {
+        while (channel == null) {
+            if (fileIndex >= files.size()) {
+                exhausted = true;
+                return false;
+            }
+
+            File file = files.get(fileIndex);
+            if (!file.exists()) {
+                fileIndex++;
+                continue;
+            }
+
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            position = channel.size();
+            window = null;
+        }
+
+        return true;
+    }
+
+    private void nextFile() throws IOException {
+        close();
+        fileIndex++;
+    }
+
+    /**
+     * Walk backwards from {@link #position} to the previous newline, mapping earlier windows as needed.
+     *
+     * @return the line, or null when the start of the current file has been reached
+     */
+    @Nullable
+    private String readPreviousLine() throws IOException {
+        if (position <= 0) {
+            return null;
+        }
+
+        /* skip the trailing newline of the line we are about to read */
+        if (position > 0 && byteAt(position - 1) == '\n') {
+            position--;
+        }
+
+        long end = position;
+        while (position > 0) {
+            if (byteAt(position - 1) == '\n') {
+                break;
+            }
+            position--;
+        }
+
+        return decode(position, end);
+    }
+
+    private byte byteAt(long offset) throws IOException {
+        if (window == null || offset < windowStart || offset >= windowStart + window.limit()) {
+            map(offset);
+        }
+
+        return window.get((int) (offset - windowStart));
+    }
+
+    private void map(long offset) throws IOException {
+        long start = Math.max(0, offset + 1 - WINDOW_SIZE);
+        long size = Math.min(WINDOW_SIZE, channel.size() - start);
+
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+    }
+
+    private String decode(long start, long end) throws IOException {
+        int length = (int) (end - start);
+        byte[] bytes = new byte[length];
+
+        if (window != null && start >= windowStart && end <= windowStart + window.limit()) {
+            for (int index = 0; index < length; index++) {
+                bytes[index] = window.get((int) (start - windowStart) + index);
+            }
+        } else {
+            /* the line straddles two windows, read it directly */
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean matches(String line) {
+        if (filter == null) {
+            return true;
+        }
+
+        String tag = field(line, 2);
+        if (tag != null && tag.toLowerCase(Locale.ROOT).contains(filter)) {
+            return true;
+        }
+
+        String caller = field(line, 3);
+        return caller != null && caller.toLowerCase(Locale.ROOT).contains(filter);
+    }
+
+    /**
+     * @return the content of the n-th {@code [...]} group of the line
+     */
+    @Nullable
+    static String field(String line, int index) {
+        int from = 0;
+
+        for (int current = 0; ; current++) {
+            int open = line.indexOf('[', from);
+            if (open == -1) {
+                return null;
+            }
+
+            int close = line.indexOf(']', open + 1);
+            if (close == -1) {
+                return null;
+            }
+
+            if (current == index) {
+                return line.substring(open + 1, close);
+            }
+
+            from = close + 1;
+        }
+    }
+
+}
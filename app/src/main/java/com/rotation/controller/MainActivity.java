@@ -1,7 +1,6 @@
 package com.rotation.controller;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.Settings;
@@ -43,8 +42,7 @@ public class MainActivity extends AppCompatActivity {
         }
 
         if (checkPermissions(true)) {
-            SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
-            boolean shouldStart = sharedPreferences.getBoolean(getString(R.string.service_enabled_key), false);
+            boolean shouldStart = RotationConfig.get(this).isServiceEnabled();
             DebugLogger.log(this, String.format("MainActivity onCreate: service_enabled pref is %s", shouldStart));
 
             if (shouldStart) {
@@ -0,0 +1,186 @@
+package com.rotation.controller;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.Getter;
+
+/**
+ * Reads the accelerometer with batched delivery and lets an {@link OrientationEstimator} decide the
+ * rotation, instead of relying on the system rotation policy.
+ * <p>
+ * While debug logging is enabled, the last samples are kept and written as a {@link SensorTrace} when
+ * the engine stops, so that a misbehaving session can be replayed.
+ */
+public class OrientationEngine implements SensorEventListener {
+
+    public static final String TAG = OrientationEngine.class.getSimpleName();
+
+    /* 25Hz is plenty to follow a hand rotating the device, batching lets the application processor sleep */
+    public static final int SAMPLING_PERIOD_MICROSECOND = 40_000;
+    public static final int MAX_REPORT_LATENCY_MICROSECOND = 80_000;
+
+    public static final int TRACE_CAPACITY = 1500;
+
+    private static final ExecutorService TRACE_WRITER = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, TAG));
+
+    public interface Listener {
+
+        /**
+         * Called on the handler thread when the decided rotation changed.
+         */
+        void onOrientationChanged(int rotation);
+
+    }
+
+    private final Context context;
+    private final SensorManager sensorManager;
+    private final Handler handler;
+    private final Listener listener;
+    private final OrientationEstimator estimator = new OrientationEstimator();
+
+    private @Getter boolean running = false;
+    private int rotation = OrientationEstimator.UNKNOWN;
+
+    /* ring of recent samples, only filled while debug logging is enabled */
+    private SensorTrace.Sample[] trace;
+    private int traceNext = 0;
+    private int traceSize = 0;
+
+    public OrientationEngine(Context context, Handler handler, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.sensorManager = (SensorManager) this.context.getSystemService(Context.SENSOR_SERVICE);
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /**
+     * @param allowedRotations see {@link OrientationEstimator#setAllowedRotations}
+     */
+    public void start(int allowedRotations) {
+        estimator.setAllowedRotations(allowedRotations);
+        rotation = estimator.getRotation();
+
+        if (running) {
+            return;
+        }
+
+        Sensor sensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        if (sensor == null) {
+            Log.w(TAG, "no accelerometer");
+            return;
+        }
+
+        estimator.reset();
+        rotation = OrientationEstimator.UNKNOWN;
+
+        if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+            trace = new SensorTrace.Sample[TRACE_CAPACITY];
+            traceNext = 0;
+            traceSize = 0;
+        }
+
+        running = sensorManager.registerListener(this, sensor, SAMPLING_PERIOD_MICROSECOND, MAX_REPORT_LATENCY_MICROSECOND, handler);
+        Log.i(TAG, String.format("started - allowedRotations=%d running=%s", allowedRotations, running));
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+
+        sensorManager.unregisterListener(this);
+        running = false;
+        rotation = OrientationEstimator.UNKNOWN;
+
+        Log.i(TAG, "stopped");
+
+        if (trace != null) {
+            saveTrace(snapshotTrace());
+            trace = null;
+        }
+    }
+
+    /**
+     * @return the decided rotation, or {@link OrientationEstimator#UNKNOWN} when stopped or undecided
+     */
+    public int getRotation() {
+        return running ? rotation : OrientationEstimator.UNKNOWN;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        float x = event.values[0];
+        float y = event.values[1];
+        float z = event.values[2];
+
+        if (trace != null) {
+            trace[traceNext] = new SensorTrace.Sample(event.timestamp, x, y, z);
+            traceNext = (traceNext + 1) % trace.length;
+            traceSize = Math.min(traceSize + 1, trace.length);
+        }
+
+        int newRotation = estimator.onSample(event.timestamp, x, y, z);
+        if (newRotation == rotation) {
+            return;
+        }
+
+        Log.d(TAG, String.format("orientation changed - old=%d new=%d", rotation, newRotation));
+        rotation = newRotation;
+        listener.onOrientationChanged(newRotation);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+
+    private SensorTrace snapshotTrace() {
+        List<SensorTrace.Sample> samples = new ArrayList<>(traceSize);
+        int start = (traceNext - traceSize + trace.length) % trace.length;
+
+        for (int index = 0; index < traceSize; index++) {
+            samples.add(trace[(start + index) % trace.length]);
+        }
+
+        return new SensorTrace(samples);
+    }
+
+    private void saveTrace(SensorTrace sensorTrace) {
+        File file = getTraceFile(context);
+
+        /* one writer for every engine instance, and the exporter never sees a partial file */
+        TRACE_WRITER.execute(() -> {
+            File temporary = new File(file.getPath() + ".tmp");
+            try (Writer writer = new BufferedWriter(new FileWriter(temporary))) {
+                sensorTrace.write(writer);
+            } catch (IOException e) {
+                Log.e(TAG, "failed to write sensor trace", e);
+                return;
+            }
+
+            if (!temporary.renameTo(file)) {
+                Log.e(TAG, "failed to replace sensor trace");
+            }
+        });
+    }
+
+    public static File getTraceFile(Context context) {
+        return new File(context.getFilesDir(), SensorTrace.FILE_NAME);
+    }
+
+}
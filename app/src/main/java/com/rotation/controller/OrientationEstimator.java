@@ -0,0 +1,152 @@
+package com.rotation.controller;
+
+/**
+ * Decides the display rotation from accelerometer samples.
+ * <p>
+ * Pure logic without any Android dependency, so that it can be driven from recorded
+ * {@link SensorTrace}s on the JVM. Samples are low-pass filtered, ignored while the device is flat or
+ * accelerating, and a new rotation is only proposed once the tilt is well inside its quadrant (away
+ * from the boundaries by {@link #HYSTERESIS_DEGREES}) and held there for {@link #SETTLE_NANOSECOND}.
+ * Rotations use the {@code android.view.Surface} values and the same convention as the platform.
+ */
+public class OrientationEstimator {
+
+    public static final int UNKNOWN = -1;
+
+    public static final int ROTATION_0 = 0;
+    public static final int ROTATION_90 = 1;
+    public static final int ROTATION_180 = 2;
+    public static final int ROTATION_270 = 3;
+
+    public static final int ALL_ROTATIONS = (1 << ROTATION_0) | (1 << ROTATION_90) | (1 << ROTATION_180) | (1 << ROTATION_270);
+    public static final int PORTRAIT_ROTATIONS = (1 << ROTATION_0) | (1 << ROTATION_180);
+    public static final int LANDSCAPE_ROTATIONS = (1 << ROTATION_90) | (1 << ROTATION_270);
+
+    public static final float GRAVITY = 9.80665f;
+
+    public static final long FILTER_TIME_CONSTANT_NANOSECOND = 200_000_000L;
+    public static final long MAX_SAMPLE_GAP_NANOSECOND = 1_000_000_000L;
+    public static final long SETTLE_NANOSECOND = 150_000_000L;
+
+    public static final float MIN_MAGNITUDE = GRAVITY * 0.5f;
+    public static final float MAX_MAGNITUDE = GRAVITY * 1.5f;
+    public static final float MAX_TILT_DEGREES = 70;
+    public static final float HYSTERESIS_DEGREES = 15;
+
+    private int allowedRotations = ALL_ROTATIONS;
+
+    private boolean filtered = false;
+    private long lastTimestamp;
+    private float filteredX;
+    private float filteredY;
+    private float filteredZ;
+
+    private int rotation = UNKNOWN;
+    private int candidate = UNKNOWN;
+    private long candidateSince;
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Restrict the proposed rotations, a bitmask of {@code 1 << rotation}.
+     */
+    public void setAllowedRotations(int allowedRotations) {
+        if (this.allowedRotations == allowedRotations) {
+            return;
+        }
+
+        this.allowedRotations = allowedRotations;
+        this.candidate = UNKNOWN;
+
+        if (rotation != UNKNOWN && !isAllowed(rotation)) {
+            rotation = UNKNOWN;
+        }
+    }
+
+    public void reset() {
+        filtered = false;
+        rotation = UNKNOWN;
+        candidate = UNKNOWN;
+    }
+
+    /**
+     * @return the decided rotation after this sample, or {@link #UNKNOWN} while none has been decided yet
+     */
+    public int onSample(long timestampNanos, float x, float y, float z) {
+        long gap = timestampNanos - lastTimestamp;
+        lastTimestamp = timestampNanos;
+
+        if (!filtered || gap <= 0 || gap > MAX_SAMPLE_GAP_NANOSECOND) {
+            filtered = true;
+            filteredX = x;
+            filteredY = y;
+            filteredZ = z;
+            candidate = UNKNOWN;
+        } else {
+            float alpha = (float) gap / (FILTER_TIME_CONSTANT_NANOSECOND + gap);
+            filteredX += alpha * (x - filteredX);
+            filteredY += alpha * (y - filteredY);
+            filteredZ += alpha * (z - filteredZ);
+        }
+
+        float magnitude = (float) Math.sqrt(filteredX * filteredX + filteredY * filteredY + filteredZ * filteredZ);
+        if (magnitude < MIN_MAGNITUDE || magnitude > MAX_MAGNITUDE) {
+            candidate = UNKNOWN;
+            return rotation;
+        }
+
+        double tilt = Math.toDegrees(Math.asin(filteredZ / magnitude));
+        if (Math.abs(tilt) > MAX_TILT_DEGREES) {
+            candidate = UNKNOWN;
+            return rotation;
+        }
+
+        /* same as the platform: right side up (x = +g) is ROTATION_90 */
+        double angle = -Math.toDegrees(Math.atan2(-filteredX, filteredY));
+        if (angle < 0) {
+            angle += 360;
+        }
+
+        int nearest = ((int) Math.round(angle / 90)) & 3;
+        if (!isAllowed(nearest)) {
+            candidate = UNKNOWN;
+            return rotation;
+        }
+
+        if (nearest == rotation) {
+            candidate = UNKNOWN;
+            return rotation;
+        }
+
+        /* distance to the center of the quadrant, a new rotation must be well inside of it */
+        double distance = Math.abs(angle - nearest * 90);
+        if (distance > 180) {
+            distance = 360 - distance;
+        }
+
+        if (rotation != UNKNOWN && distance > 45 - HYSTERESIS_DEGREES) {
+            candidate = UNKNOWN;
+            return rotation;
+        }
+
+        if (nearest != candidate) {
+            candidate = nearest;
+            candidateSince = timestampNanos;
+            return rotation;
+        }
+
+        if (timestampNanos - candidateSince >= SETTLE_NANOSECOND) {
+            rotation = nearest;
+            candidate = UNKNOWN;
+        }
+
+        return rotation;
+    }
+
+    private boolean isAllowed(int rotation) {
+        return (allowedRotations & (1 << rotation)) != 0;
+    }
+
+}
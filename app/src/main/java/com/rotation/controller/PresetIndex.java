@@ -0,0 +1,201 @@
+package com.rotation.controller;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Read-optimized, immutable map from package name, and optionally activity class name, to preset mode.
+ * <p>
+ * Built once from the preferences, then replaced as a whole (copy-on-write) whenever a preset is
+ * changed through {@link RotationSharedPreferences}. Activity entries are slotted by their package hash,
+ * so a single probe sequence finds both the activity preset and the package fallback. Lookups do not allocate.
+ */
+public class PresetIndex {
+
+    public static final String PRESETS_KEY_PREFIX = "presets/";
+    public static final String ACTIVITIES_KEY_SEPARATOR = "/activities/";
+
+    private static final RotationMode[] MODES = RotationMode.values();
+    private static final String MODE_KEY_SUFFIX = "/mode";
+
+    private static volatile PresetIndex current;
+
+    private final String[] packages;
+    private final String[] classes;
+    private final byte[] modes;
+    private final int mask;
+    private final @Getter int size;
+
+    private PresetIndex(Map<Key, RotationMode> presets) {
+        int capacity = Integer.highestOneBit(Math.max(presets.size(), 1) * 2 - 1) << 1;
+
+        packages = new String[capacity];
+        classes = new String[capacity];
+        modes = new byte[capacity];
+        mask = capacity - 1;
+        size = presets.size();
+
+        for (Map.Entry<Key, RotationMode> entry : presets.entrySet()) {
+            Key key = entry.getKey();
+
+            int index = key.packageName.hashCode() & mask;
+            while (packages[index] != null) {
+                index = (index + 1) & mask;
+            }
+
+            packages[index] = key.packageName;
+            classes[index] = key.className;
+            modes[index] = (byte) entry.getValue().ordinal();
+        }
+    }
+
+    @Nullable
+    public RotationMode lookup(String packageName) {
+        return lookup(packageName, null);
+    }
+
+    /**
+     * @return the preset of the activity if there is one, else the preset of its package
+     */
+    @Nullable
+    public RotationMode lookup(String packageName, @Nullable String className) {
+        RotationMode packageMode = null;
+        int index = packageName.hashCode() & mask;
+
+        while (true) {
+            String key = packages[index];
+            if (key == null) {
+                return packageMode;
+            }
+
+            if (key.equals(packageName)) {
+                String entryClass = classes[index];
+
+                if (entryClass == null) {
+                    packageMode = MODES[modes[index]];
+                } else if (entryClass.equals(className)) {
+                    return MODES[modes[index]];
+                }
+            }
+
+            index = (index + 1) & mask;
+        }
+    }
+
+    Map<Key, RotationMode> toMap() {
+        Map<Key, RotationMode> presets = new HashMap<>();
+
+        for (int index = 0; index < packages.length; index++) {
+            if (packages[index] != null) {
+                presets.put(new Key(packages[index], classes[index]), MODES[modes[index]]);
+            }
+        }
+
+        return presets;
+    }
+
+    /**
+     * @param preferences the default preferences, only read by the first call
+     */
+    public static PresetIndex get(SharedPreferences preferences) {
+        PresetIndex index = current;
+        if (index != null) {
+            return index;
+        }
+
+        synchronized (PresetIndex.class) {
+            if (current == null) {
+                current = new PresetIndex(readPresets(preferences));
+            }
+
+            return current;
+        }
+    }
+
+    @VisibleForTesting
+    static synchronized void reset() {
+        current = null;
+    }
+
+    /**
+     * Swap in a new index reflecting a single preset change. Nothing to do while no index has been built,
+     * the first {@link #get} will read the up to date preferences.
+     */
+    static synchronized void onPresetChanged(String packageName, @Nullable String className, @Nullable RotationMode newMode) {
+        if (current == null) {
+            return;
+        }
+
+        Map<Key, RotationMode> presets = current.toMap();
+        Key key = new Key(packageName, className);
+
+        if (newMode != null) {
+            presets.put(key, newMode);
+        } else {
+            presets.remove(key);
+        }
+
+        current = new PresetIndex(presets);
+    }
+
+    @NonNull
+    public static String getApplicationKey(String packageName) {
+        return PRESETS_KEY_PREFIX + packageName + MODE_KEY_SUFFIX;
+    }
+
+    @NonNull
+    public static String getActivityKey(String packageName, String className) {
+        return PRESETS_KEY_PREFIX + packageName + ACTIVITIES_KEY_SEPARATOR + className + MODE_KEY_SUFFIX;
+    }
+
+    private static Map<Key, RotationMode> readPresets(SharedPreferences preferences) {
+        Map<Key, RotationMode> presets = new HashMap<>();
+
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(PRESETS_KEY_PREFIX) || !key.endsWith(MODE_KEY_SUFFIX)) {
+                continue;
+            }
+
+            Object value = entry.getValue();
+            RotationMode mode = value instanceof String ? RotationMode.valueOf((String) value, null) : null;
+            if (mode == null) {
+                continue;
+            }
+
+            /* either "<package>" or "<package>/activities/<class>" */
+            String path = key.substring(PRESETS_KEY_PREFIX.length(), key.length() - MODE_KEY_SUFFIX.length());
+            int separator = path.indexOf(ACTIVITIES_KEY_SEPARATOR);
+
+            if (separator == -1) {
+                presets.put(new Key(path, null), mode);
+            } else {
+                String packageName = path.substring(0, separator);
+                String className = path.substring(separator + ACTIVITIES_KEY_SEPARATOR.length());
+                presets.put(new Key(packageName, className), mode);
+            }
+        }
+
+        return presets;
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    static class Key {
+
+        final String packageName;
+        final @Nullable String className;
+
+    }
+
+}
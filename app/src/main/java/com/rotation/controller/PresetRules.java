@@ -0,0 +1,388 @@
+package com.rotation.controller;
+
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Getter;
+
+/**
+ * Pattern and category preset rules, compiled into a trie.
+ * <p>
+ * One rule per line, {@code #} starts a comment:
+ * <pre>
+ * com.example.games.*=LANDSCAPE_SENSOR
+ * com.example.?layer=PORTRAIT
+ * category:game=LANDSCAPE_SENSOR
+ * </pre>
+ * Patterns support {@code *} (any sequence, a trailing one makes a prefix rule) and {@code ?} (any
+ * single character). Precedence, highest first: the exact per-app preset (see {@link PresetIndex}),
+ * the matching pattern with the most literal characters (earliest line on ties), then the category rule.
+ * <p>
+ * Packages are matched by walking the trie, whose cost depends on the package name and not on the
+ * number of rules: consecutive stars are collapsed and each (node, position) state is visited at most
+ * once, so a walk is bounded by nodes times name length whatever the stars. Results are then memoized
+ * per package, each compiled set of rules has its own memo.
+ */
+public class PresetRules {
+
+    public static final String TAG = PresetRules.class.getSimpleName();
+
+    public static final String CATEGORY_PREFIX = "category:";
+
+    private static final RotationMode[] MODES = RotationMode.values();
+    private static final int NO_MODE = -1;
+
+    public static final PresetRules EMPTY = compile(null);
+
+    private final @Getter String source;
+    private int nodeCount = 0;
+    private final Node root = new Node(false);
+    private final int[] categoryModes;
+    private final boolean hasCategoryRules;
+    private final @Getter int ruleCount;
+    private final ConcurrentHashMap<String, Integer> memo = new ConcurrentHashMap<>();
+
+    /**
+     * Source of the {@link ApplicationInfo} category of an installed package, only asked when no
+     * pattern matched and there are category rules.
+     */
+    public interface Categories {
+
+        /**
+         * @return the category, or {@link ApplicationInfo#CATEGORY_UNDEFINED} when unknown
+         */
+        int getCategory(String packageName);
+
+    }
+
+    private PresetRules(String source, List<Rule> rules) {
+        this.source = source;
+        this.ruleCount = rules.size();
+
+        int[] categories = new int[Category.values().length];
+        for (int index = 0; index < categories.length; index++) {
+            categories[index] = NO_MODE;
+        }
+
+        boolean anyCategory = false;
+        for (Rule rule : rules) {
+            if (rule.category != null) {
+                /* first rule for a category wins */
+                if (categories[rule.category.ordinal()] == NO_MODE) {
+                    categories[rule.category.ordinal()] = rule.mode.ordinal();
+                }
+                anyCategory = true;
+            } else {
+                root.insert(rule.pattern, 0, rule);
+            }
+        }
+
+        this.categoryModes = categories;
+        this.hasCategoryRules = anyCategory;
+    }
+
+    public boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    @Nullable
+    public RotationMode lookup(String packageName, Categories categories) {
+        if (ruleCount == 0) {
+            return null;
+        }
+
+        Integer cached = memo.get(packageName);
+        if (cached == null) {
+            cached = resolve(packageName, categories);
+            memo.put(packageName, cached);
+        }
+
+        return cached == NO_MODE ? null : MODES[cached];
+    }
+
+    /**
+     * @return the mode ordinal of the winning pattern rule for the package, or {@link #NO_MODE}
+     */
+    int matchPattern(String packageName) {
+        Rule best = root.match(packageName, 0, null, new BitSet());
+        return best != null ? best.mode.ordinal() : NO_MODE;
+    }
+
+    private int resolve(String packageName, Categories categories) {
+        int mode = matchPattern(packageName);
+        if (mode != NO_MODE || !hasCategoryRules) {
+            return mode;
+        }
+
+        Category category = Category.of(categories.getCategory(packageName));
+        return category != null ? categoryModes[category.ordinal()] : NO_MODE;
+    }
+
+    public static PresetRules compile(@Nullable String source) {
+        List<Rule> rules = new ArrayList<>();
+        String text = source != null ? source : "";
+
+        int order = 0;
+        for (String rawLine : text.split("\n")) {
+            String line = rawLine.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            Rule rule = Rule.parse(collapseStars(line), order);
+            if (rule == null) {
+                Log.w(TAG, String.format("ignoring invalid rule - line=%s", line));
+                continue;
+            }
+
+            rules.add(rule);
+            order++;
+        }
+
+        return new PresetRules(text, rules);
+    }
+
+    /**
+     * {@code **} matches the same as {@code *}, but would add a level of backtracking per star.
+     */
+    static String collapseStars(String line) {
+        if (!line.contains("**")) {
+            return line;
+        }
+
+        StringBuilder builder = new StringBuilder(line.length());
+        for (int index = 0; index < line.length(); index++) {
+            char character = line.charAt(index);
+            if (character != '*' || index == 0 || line.charAt(index - 1) != '*') {
+                builder.append(character);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Subset of {@link ApplicationInfo} categories that rules can refer to.
+     */
+    enum Category {
+
+        GAME(ApplicationInfo.CATEGORY_GAME),
+        AUDIO(ApplicationInfo.CATEGORY_AUDIO),
+        VIDEO(ApplicationInfo.CATEGORY_VIDEO),
+        IMAGE(ApplicationInfo.CATEGORY_IMAGE),
+        SOCIAL(ApplicationInfo.CATEGORY_SOCIAL),
+        NEWS(ApplicationInfo.CATEGORY_NEWS),
+        MAPS(ApplicationInfo.CATEGORY_MAPS),
+        PRODUCTIVITY(ApplicationInfo.CATEGORY_PRODUCTIVITY);
+
+        private final int value;
+
+        Category(int value) {
+            this.value = value;
+        }
+
+        @Nullable
+        static Category fromName(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException __) {
+                return null;
+            }
+        }
+
+        @Nullable
+        static Category of(int value) {
+            for (Category category : values()) {
+                if (category.value == value) {
+                    return category;
+                }
+            }
+
+            return null;
+        }
+
+    }
+
+    static class Rule {
+
+        final String pattern;
+        final @Nullable Category category;
+        final RotationMode mode;
+        final int literalCount;
+        final int order;
+
+        Rule(String pattern, @Nullable Category category, RotationMode mode, int order) {
+            this.pattern = pattern;
+            this.category = category;
+            this.mode = mode;
+            this.order = order;
+
+            int literals = 0;
+            for (int index = 0; index < pattern.length(); index++) {
+                char character = pattern.charAt(index);
+                if (character != '*' && character != '?') {
+                    literals++;
+                }
+            }
+            this.literalCount = literals;
+        }
+
+        boolean beats(@Nullable Rule other) {
+            if (other == null) {
+                return true;
+            }
+
+            if (literalCount != other.literalCount) {
+                return literalCount > other.literalCount;
+            }
+
+            return order < other.order;
+        }
+
+        @Nullable
+        static Rule parse(String line, int order) {
+            int separator = line.lastIndexOf('=');
+            if (separator <= 0) {
+                return null;
+            }
+
+            String target = line.substring(0, separator).trim();
+            RotationMode mode = RotationMode.valueOf(line.substring(separator + 1).trim().toUpperCase(Locale.ROOT), null);
+            if (mode == null || target.isEmpty()) {
+                return null;
+            }
+
+            if (target.startsWith(CATEGORY_PREFIX)) {
+                Category category = Category.fromName(target.substring(CATEGORY_PREFIX.length()).trim());
+                return category != null ? new Rule(target, category, mode, order) : null;
+            }
+
+            return new Rule(target, null, mode, order);
+        }
+
+    }
+
+    /**
+     * Trie node, {@code *} and {@code ?} get dedicated children so that literal edges stay a plain scan.
+     * The child of a star edge loops on itself, one character at a time.
+     */
+    class Node {
+
+        private final int id = nodeCount++;
+        private final boolean star;
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private @Nullable Node anyOne;
+        private @Nullable Node anySequence;
+        private @Nullable Rule rule;
+
+        Node(boolean star) {
+            this.star = star;
+        }
+
+        void insert(String pattern, int index, Rule newRule) {
+            if (index == pattern.length()) {
+                if (newRule.beats(rule)) {
+                    rule = newRule;
+                }
+                return;
+            }
+
+            char character = pattern.charAt(index);
+            Node child;
+
+            if (character == '*') {
+                if (anySequence == null) {
+                    anySequence = new Node(true);
+                }
+                child = anySequence;
+            } else if (character == '?') {
+                if (anyOne == null) {
+                    anyOne = new Node(false);
+                }
+                child = anyOne;
+            } else {
+                child = literal(character);
+                if (child == null) {
+                    child = addLiteral(character);
+                }
+            }
+
+            child.insert(pattern, index + 1, newRule);
+        }
+
+        /**
+         * @param visited the (node, position) states already walked, their rules are already in best
+         */
+        @Nullable
+        Rule match(String name, int index, @Nullable Rule best, BitSet visited) {
+            int state = id * (name.length() + 1) + index;
+            if (visited.get(state)) {
+                return best;
+            }
+            visited.set(state);
+
+            if (anySequence != null) {
+                /* the star swallows no character, more are taken by its own loop */
+                best = anySequence.match(name, index, best, visited);
+            }
+
+            if (index == name.length()) {
+                return rule != null && rule.beats(best) ? rule : best;
+            }
+
+            if (star) {
+                best = match(name, index + 1, best, visited);
+            }
+
+            if (anyOne != null) {
+                best = anyOne.match(name, index + 1, best, visited);
+            }
+
+            Node child = literal(name.charAt(index));
+            if (child != null) {
+                best = child.match(name, index + 1, best, visited);
+            }
+
+            return best;
+        }
+
+        @Nullable
+        private Node literal(char character) {
+            for (int index = 0; index < labels.length; index++) {
+                if (labels[index] == character) {
+                    return children[index];
+                }
+            }
+
+            return null;
+        }
+
+        private Node addLiteral(char character) {
+            int length = labels.length;
+
+            char[] newLabels = new char[length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, length);
+            newLabels[length] = character;
+
+            Node[] newChildren = new Node[length + 1];
+            System.arraycopy(children, 0, newChildren, 0, length);
+            newChildren[length] = new Node(false);
+
+            labels = newLabels;
+            children = newChildren;
+
+            return newChildren[length];
+        }
+
+    }
+
+}
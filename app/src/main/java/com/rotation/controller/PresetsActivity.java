@@ -1,11 +1,15 @@
 package com.rotation.controller;
 
-import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -17,6 +21,7 @@ import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.Switch;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -24,25 +29,21 @@ import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.function.Consumer;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
 public class PresetsActivity extends AppCompatActivity {
 
-    public static final List<String> IGNORED_PREFIXES = Arrays.asList(
-            "com.android.systemui"
-    );
+    public static final String TAG = PresetsActivity.class.getSimpleName();
 
     private LinearLayout loadingView;
     private Switch showSystemAppsSwitch;
@@ -50,6 +51,26 @@ public class PresetsActivity extends AppCompatActivity {
     private List<ApplicationInfo> allApplications;
     private List<ApplicationInfo> filteredApplications;
     private RotationSharedPreferences preferences;
+    private ApplicationLoader loader;
+    private ApplicationFilter filter;
+    private int applicationsVersion = 0;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+
+            /* an update sends removed and added (both replacing) before replaced, only reload on the latter */
+            if (!Intent.ACTION_PACKAGE_REPLACED.equals(intent.getAction()) && intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+                return;
+            }
+
+            loader.refresh(data.getSchemeSpecificPart());
+        }
+    };
     private String currentQuery = "";
 
     @Override
@@ -76,6 +97,12 @@ public class PresetsActivity extends AppCompatActivity {
         loadingView.setVisibility(View.VISIBLE);
         recyclerView.setVisibility(View.GONE);
 
+        filter = new ApplicationFilter((result, diff) -> {
+            filteredApplications.clear();
+            filteredApplications.addAll(result);
+            diff.dispatchUpdatesTo(adapter);
+        });
+
         loadInstalledApplications();
 
         adapter = new ApplicationListAdapter(filteredApplications, new ApplicationListAdapter.OnItemClickListener() {
@@ -95,6 +122,15 @@ public class PresetsActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        unregisterReceiver(packageReceiver);
+        loader.cancel();
+        filter.shutdown();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.presets_menu, menu);
@@ -133,82 +169,85 @@ public class PresetsActivity extends AppCompatActivity {
     }
 
     private void loadInstalledApplications() {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-
-        executor.execute(new Runnable() {
+        loader = new ApplicationLoader(this, preferences, new ApplicationLoader.Listener() {
             @Override
-            public void run() {
-                PackageManager packageManager = getPackageManager();
-
-                List<android.content.pm.ApplicationInfo> resolveInfoList = packageManager.getInstalledApplications(0);
-
-                for (android.content.pm.ApplicationInfo resolveInfo : resolveInfoList) {
-                    String packageName = resolveInfo.packageName;
-                    
-                    boolean ignored = false;
-                    for (String prefix : IGNORED_PREFIXES) {
-                        if (packageName.startsWith(prefix)) {
-                            ignored = true;
-                            break;
-                        }
-                    }
-                    if (ignored) continue;
-
-                    String displayName = resolveInfo.loadLabel(packageManager).toString();
-                    Drawable icon = resolveInfo.loadIcon(packageManager);
-                    RotationMode currentMode = preferences.getApplicationMode(packageName);
-                    boolean isSystem = (resolveInfo.flags & android.content.pm.ApplicationInfo.FLAG_SYSTEM) != 0;
-
-                    if (displayName.equals(packageName)) {
-                        displayName = null;
-                    }
-
-                    ApplicationInfo application = new ApplicationInfo(packageName, displayName, icon, currentMode, isSystem);
-
-                    allApplications.add(application);
-                }
+            public void onBatchLoaded(List<ApplicationInfo> batch) {
+                mergeSorted(allApplications, batch);
+                applicationsVersion++;
 
-                Collections.sort(allApplications);
+                loadingView.setVisibility(View.GONE);
+                findViewById(R.id.list).setVisibility(View.VISIBLE);
+                applyFilter(currentQuery);
+            }
 
-                runOnUiThread(() -> {
-                    loadingView.setVisibility(View.GONE);
-                    findViewById(R.id.list).setVisibility(View.VISIBLE);
-                    applyFilter(currentQuery);
-                });
+            @Override
+            public void onApplicationsRemoved(Set<String> packageNames) {
+                allApplications.removeIf(application -> packageNames.contains(application.getPackageName()));
+                applicationsVersion++;
+                applyFilter(currentQuery);
+            }
 
-                executor.shutdown();
+            @Override
+            public void onLoadFinished() {
+                loadingView.setVisibility(View.GONE);
+                findViewById(R.id.list).setVisibility(View.VISIBLE);
             }
         });
+
+        loader.start();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+
+        ContextCompat.registerReceiver(this, packageReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
     }
 
-    @SuppressLint("NotifyDataSetChanged")
-    private void applyFilter(String query) {
-        filteredApplications.clear();
-        boolean showSystem = showSystemAppsSwitch.isChecked();
-        String lowerQuery = query.toLowerCase();
+    /**
+     * Merge a sorted batch into the sorted list, in place, replacing entries of the same packages.
+     */
+    static void mergeSorted(List<ApplicationInfo> target, List<ApplicationInfo> batch) {
+        Set<String> packageNames = new HashSet<>();
+        for (ApplicationInfo application : batch) {
+            packageNames.add(application.getPackageName());
+        }
+        target.removeIf(application -> packageNames.contains(application.getPackageName()));
 
-        for (ApplicationInfo application : allApplications) {
-            if (!showSystem && application.isSystem()) {
-                continue;
-            }
+        List<ApplicationInfo> merged = new ArrayList<>(target.size() + batch.size());
 
-            if (query.isEmpty()) {
-                filteredApplications.add(application);
+        int left = 0;
+        int right = 0;
+        while (left < target.size() && right < batch.size()) {
+            if (target.get(left).compareTo(batch.get(right)) <= 0) {
+                merged.add(target.get(left++));
             } else {
-                String displayName = application.getDisplayName();
-                boolean matchDisplayName = displayName != null && displayName.toLowerCase().contains(lowerQuery);
-                boolean matchPackageName = application.getPackageName().contains(lowerQuery);
-
-                if (matchDisplayName || matchPackageName) {
-                    filteredApplications.add(application);
-                }
+                merged.add(batch.get(right++));
             }
         }
 
-        adapter.notifyDataSetChanged();
+        merged.addAll(target.subList(left, target.size()));
+        merged.addAll(batch.subList(right, batch.size()));
+
+        target.clear();
+        target.addAll(merged);
+    }
+
+    private void applyFilter(String query) {
+        filter.filter(new ArrayList<>(allApplications), applicationsVersion, query, showSystemAppsSwitch.isChecked());
     }
 
     private void showModeDialog(ApplicationInfo application) {
+        showModeDialog(
+                getString(R.string.presets_change_title, application.getDisplayName()),
+                application.getCurrentMode(),
+                selectedMode -> updateApplicationMode(application, selectedMode),
+                () -> showActivitiesDialog(application)
+        );
+    }
+
+    private void showModeDialog(String title, @Nullable RotationMode currentMode, Consumer<RotationMode> onSelected, @Nullable Runnable onShowActivities) {
         String[] items = {
                 getString(R.string.mode_default),
                 getString(R.string.mode_auto),
@@ -231,8 +270,6 @@ public class PresetsActivity extends AppCompatActivity {
                 RotationMode.LANDSCAPE_SENSOR,
         };
 
-        RotationMode currentMode = application.getCurrentMode();
-
         int selectedIndex = 0;
         for (int index = 0; index < values.length; index++) {
             if (values[index] == currentMode) {
@@ -241,13 +278,61 @@ public class PresetsActivity extends AppCompatActivity {
             }
         }
 
-        new AlertDialog.Builder(this)
-                .setTitle(getString(R.string.presets_change_title, application.getDisplayName()))
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(title)
                 .setSingleChoiceItems(items, selectedIndex, null)
                 .setPositiveButton(R.string.presets_change_positive, (dialog, which) -> {
                     int selected = ((AlertDialog) dialog).getListView().getCheckedItemPosition();
-                    RotationMode selectedMode = values[selected];
-                    updateApplicationMode(application, selectedMode);
+                    onSelected.accept(values[selected]);
+                })
+                .setNegativeButton(R.string.presets_change_negative, null);
+
+        if (onShowActivities != null) {
+            builder.setNeutralButton(R.string.presets_change_activities, (dialog, which) -> onShowActivities.run());
+        }
+
+        builder.show();
+    }
+
+    private void showActivitiesDialog(ApplicationInfo application) {
+        String packageName = application.getPackageName();
+
+        ActivityInfo[] activities = null;
+        try {
+            PackageInfo packageInfo = getPackageManager().getPackageInfo(packageName, PackageManager.GET_ACTIVITIES);
+            activities = packageInfo.activities;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, String.format("could not list activities - packageName=%s", packageName), e);
+        }
+
+        if (activities == null || activities.length == 0) {
+            Toast.makeText(this, R.string.presets_activities_empty, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String[] classNames = new String[activities.length];
+        String[] items = new String[activities.length];
+
+        for (int index = 0; index < activities.length; index++) {
+            String className = activities[index].name;
+            String shortName = className.substring(className.lastIndexOf('.') + 1);
+            RotationMode mode = preferences.getActivityMode(packageName, className);
+
+            classNames[index] = className;
+            items[index] = mode != null ? String.format("%s (%s)", shortName, getString(RotationModeResources.stringId(mode))) : shortName;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.presets_activities_title, application.getDisplayName()))
+                .setItems(items, (dialog, which) -> {
+                    String className = classNames[which];
+
+                    showModeDialog(
+                            items[which],
+                            preferences.getActivityMode(packageName, className),
+                            selectedMode -> preferences.setActivityMode(packageName, className, selectedMode),
+                            null
+                    );
                 })
                 .setNegativeButton(R.string.presets_change_negative, null)
                 .show();
@@ -270,39 +355,6 @@ public class PresetsActivity extends AppCompatActivity {
 
 }
 
-@Data
-@AllArgsConstructor
-class ApplicationInfo implements Comparable<ApplicationInfo> {
-
-    private String packageName;
-    private @Nullable String displayName;
-    private Drawable icon;
-    private @Nullable RotationMode currentMode;
-    private boolean isSystem;
-
-    public boolean hasName() {
-        return displayName != null;
-    }
-
-    @Override
-    public int compareTo(ApplicationInfo other) {
-        if (displayName != null && other.displayName == null) {
-            return -1;
-        }
-
-        if (displayName == null && other.displayName != null) {
-            return 1;
-        }
-
-        if (displayName != null) {
-            return displayName.compareToIgnoreCase(other.displayName);
-        }
-
-        return packageName.compareTo(other.packageName);
-    }
-
-}
-
 @RequiredArgsConstructor
 class ApplicationListAdapter extends RecyclerView.Adapter<ApplicationListAdapter.ViewHolder> {
 
@@ -367,9 +419,9 @@ class ApplicationListAdapter extends RecyclerView.Adapter<ApplicationListAdapter
                 currentModeIcon.setVisibility(View.GONE);
             } else {
                 Context context = currentModeText.getContext();
-                currentModeText.setText(context.getString(R.string.presets_mode, context.getString(currentMode.stringId())));
+                currentModeText.setText(context.getString(R.string.presets_mode, context.getString(RotationModeResources.stringId(currentMode))));
 
-                currentModeIcon.setImageResource(application.getCurrentMode().drawableId());
+                currentModeIcon.setImageResource(RotationModeResources.drawableId(application.getCurrentMode()));
                 currentModeIcon.setVisibility(View.VISIBLE);
             }
 
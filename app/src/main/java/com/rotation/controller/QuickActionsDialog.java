@@ -1,32 +1,40 @@
 package com.rotation.controller;
 
 import android.app.Dialog;
-import android.content.BroadcastReceiver;
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.ServiceConnection;
-import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.os.IBinder;
 import android.view.ContextThemeWrapper;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
-import androidx.core.content.ContextCompat;
-import androidx.preference.PreferenceManager;
 
-import java.util.Set;
+/**
+ * Mode, guard and power buttons shown from the tile.
+ * <p>
+ * Styled in its first frame from the in-memory state (the last {@link RotationStateBus} snapshot, else
+ * the {@link RotationConfig}), then kept up to date by the state bus. Views are looked up once and only
+ * re-tinted or shown/hidden when their state actually changes.
+ */
+public class QuickActionsDialog extends Dialog implements View.OnClickListener {
 
-public class QuickActionsDialog extends Dialog implements View.OnClickListener, ServiceConnection {
+    private static final RotationMode[] MODES = RotationMode.values();
+    private static final int GUARD_INDEX = MODES.length;
+    private static final int TOGGLE_SERVICE_INDEX = MODES.length + 1;
 
     private final Listener mListener = new Listener();
 
-    private RotationService mService;
-    private boolean isBound = false;
+    private final ImageView[] mViews = new ImageView[MODES.length + 2];
+    private TextView mInfoView;
+    private int mActiveColor;
+    private int mInactiveColor;
+
+    /* what the views currently show, -1 until first applied */
+    private int appliedActiveMask = -1;
+    private int appliedVisibleButtons = -1;
+
     private boolean isRegistered = false;
 
     public QuickActionsDialog(@NonNull Context context) {
@@ -39,23 +47,30 @@ public class QuickActionsDialog extends Dialog implements View.OnClickListener,
 
         setContentView(R.layout.quick_actions_dialog);
 
-        for (RotationMode mode : RotationMode.values()) {
-            ImageView view = findViewById(mode.viewId());
-            view.setOnClickListener(this);
+        final Context context = getContext();
+        mActiveColor = context.getColor(R.color.active);
+        mInactiveColor = context.getColor(R.color.inactive);
+
+        for (RotationMode mode : MODES) {
+            mViews[mode.ordinal()] = findViewById(RotationModeResources.viewId(mode));
         }
+        mViews[GUARD_INDEX] = findViewById(R.id.guard);
+        mViews[TOGGLE_SERVICE_INDEX] = findViewById(R.id.toggle_service);
 
-        ImageView guardView = findViewById(R.id.guard);
-        guardView.setOnClickListener(this);
+        for (ImageView view : mViews) {
+            view.setOnClickListener(this);
+        }
 
-        ImageView toggleServiceButton = findViewById(R.id.toggle_service);
-        toggleServiceButton.setOnClickListener(this);
+        mInfoView = findViewById(R.id.info);
 
-        TextView infoView = findViewById(R.id.info);
-        if (RotationService.isRunning(getContext())) {
-            infoView.setVisibility(View.GONE);
+        RotationStateBus.Snapshot snapshot = RotationStateBus.getSnapshot();
+        if (snapshot != null) {
+            updateViews(snapshot);
+        } else {
+            // Not created in this process, so not running
+            RotationConfig config = RotationConfig.get(context);
+            updateViews(config.isGuard() || config.getMode().doesRequireGuard(), config.getMode(), config.isPowerOn(), false);
         }
-
-        updateViews(false, null);
     }
 
     @Override
@@ -70,7 +85,7 @@ public class QuickActionsDialog extends Dialog implements View.OnClickListener,
         } else if (viewId == R.id.toggle_service) {
             intent = RotationService.newTogglePowerIntent(context);
         } else {
-            RotationMode newMode = RotationMode.fromViewId(viewId);
+            RotationMode newMode = RotationModeResources.fromViewId(viewId);
             if (newMode != null) {
                 intent = RotationService.newChangeModeIntent(context, newMode);
             }
@@ -80,6 +95,8 @@ public class QuickActionsDialog extends Dialog implements View.OnClickListener,
             return;
         }
 
+        RotationMetrics.markEvent("dialog");
+
         if (!RotationService.isRunning(context)) {
             RotationService.start(context);
         }
@@ -95,127 +112,70 @@ public class QuickActionsDialog extends Dialog implements View.OnClickListener,
     protected void onStart() {
         super.onStart();
 
-        final Context context = getContext();
-
-        Intent intent = new Intent(context, RotationService.class);
-        isBound = context.bindService(intent, this, Context.BIND_AUTO_CREATE);
-
-        IntentFilter filter = new IntentFilter(RotationService.ACTION_NOTIFY_UPDATED);
-        ContextCompat.registerReceiver(context, mListener, filter, ContextCompat.RECEIVER_EXPORTED);
+        RotationStateBus.subscribe(mListener);
         isRegistered = true;
+
+        // Catch up with anything published between onCreate and now
+        RotationStateBus.Snapshot snapshot = RotationStateBus.getSnapshot();
+        if (snapshot != null) {
+            updateViews(snapshot);
+        }
     }
 
     @Override
     protected void onStop() {
         super.onStop();
 
-        final Context context = getContext();
-
-        if (isBound) {
-            try {
-                context.unbindService(this);
-            } catch (IllegalArgumentException e) {
-                DebugLogger.log(context, "Error unbinding service: " + e.getMessage());
-            }
-            isBound = false;
-        }
-        mService = null;
-
         if (isRegistered) {
-            try {
-                context.unregisterReceiver(mListener);
-            } catch (IllegalArgumentException e) {
-                DebugLogger.log(context, "Error unregistering receiver: " + e.getMessage());
-            }
+            RotationStateBus.unsubscribe(mListener);
             isRegistered = false;
         }
     }
 
-    @Override
-    public void onServiceConnected(ComponentName className, IBinder service) {
-        if (!isBound) {
-            return;
-        }
-
-        RotationService.LocalBinder binder = (RotationService.LocalBinder) service;
-        mService = binder.getService();
-
-        RotationMode activeMode = mService.getActiveMode();
-        boolean guard = mService.isGuardEnabledOrForced();
-
-        updateViews(guard, activeMode);
-    }
-
-    @Override
-    public void onServiceDisconnected(ComponentName className) {
-        mService = null;
+    public void updateViews(RotationStateBus.Snapshot snapshot) {
+        updateViews(snapshot.isGuardEnabledOrForced(), snapshot.getMode(), snapshot.isPowerOn(), snapshot.isRunning());
     }
 
-    public void updateViews(boolean guard, RotationMode activeMode) {
-        final Context context = getContext();
-
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+    public void updateViews(boolean guard, RotationMode activeMode, boolean isPowerOn, boolean running) {
+        mInfoView.setVisibility(running ? View.GONE : View.VISIBLE);
 
-        Set<String> enabledButtons = preferences.getStringSet(context.getString(R.string.buttons_key), null);
-        for (RotationMode mode : RotationMode.values()) {
-            ImageView view = findViewById(mode.viewId());
-
-            if (enabledButtons != null && !enabledButtons.contains(mode.name())) {
-                view.setVisibility(View.GONE);
-            } else {
-                view.setVisibility(View.VISIBLE);
+        int visibleButtons = RotationConfig.get(getContext()).getVisibleButtons();
+        if (visibleButtons != appliedVisibleButtons) {
+            for (RotationMode mode : MODES) {
+                setVisible(mViews[mode.ordinal()], (visibleButtons & RotationConfig.buttonBit(mode)) != 0);
             }
+            setVisible(mViews[GUARD_INDEX], (visibleButtons & RotationConfig.BUTTON_GUARD_BIT) != 0);
 
-            setActiveColor(context, view, mode == activeMode);
+            appliedVisibleButtons = visibleButtons;
         }
 
-        ImageView guardView = findViewById(R.id.guard);
-        if (enabledButtons != null && !enabledButtons.contains("GUARD")) {
-            guardView.setVisibility(View.GONE);
-        } else {
-            guardView.setVisibility(View.VISIBLE);
+        int activeMask = activeMode != null ? 1 << activeMode.ordinal() : 0;
+        activeMask |= guard ? 1 << GUARD_INDEX : 0;
+        activeMask |= isPowerOn ? 1 << TOGGLE_SERVICE_INDEX : 0;
+
+        int changed = appliedActiveMask == -1 ? -1 : activeMask ^ appliedActiveMask;
+        for (int index = 0; index < mViews.length; index++) {
+            if ((changed & (1 << index)) != 0) {
+                mViews[index].setColorFilter((activeMask & (1 << index)) != 0 ? mActiveColor : mInactiveColor);
+            }
         }
-        setActiveColor(context, guardView, guard);
 
-        boolean isPowerOn = preferences.getBoolean(context.getString(R.string.power_on_key), true);
-        ImageView toggleServiceView = findViewById(R.id.toggle_service);
-        setActiveColor(context, toggleServiceView, isPowerOn);
+        appliedActiveMask = activeMask;
     }
 
-    private void setActiveColor(Context context, ImageView view, boolean active) {
-        if (active) {
-            view.setColorFilter(context.getColor(R.color.active));
-        } else {
-            view.setColorFilter(context.getColor(R.color.inactive));
-        }
+    private static void setVisible(View view, boolean visible) {
+        view.setVisibility(visible ? View.VISIBLE : View.GONE);
     }
 
     public boolean shouldCloseOnClick() {
-        final Context context = getContext();
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
-
-        return preferences.getBoolean(context.getString(R.string.close_dialog_on_click_key), true);
+        return RotationConfig.get(getContext()).isCloseDialogOnClick();
     }
 
-    public class Listener extends BroadcastReceiver {
+    public class Listener implements RotationStateBus.Listener {
 
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent == null) {
-                return;
-            }
-
-            String action = intent.getAction();
-            if (!RotationService.ACTION_NOTIFY_UPDATED.equals(action)) {
-                return;
-            }
-
-            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
-
-            boolean guard = preferences.getBoolean(context.getString(R.string.guard_key), false);
-            RotationMode activeMode = RotationMode.fromPreferences(context);
-
-            updateViews(guard, activeMode);
+        public void onStateChanged(RotationStateBus.Snapshot snapshot) {
+            updateViews(snapshot);
         }
     }
 
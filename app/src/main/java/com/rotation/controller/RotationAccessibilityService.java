@@ -1,10 +1,20 @@
 package com.rotation.controller;
 
 import android.accessibilityservice.AccessibilityService;
-import android.app.NotificationManager;
+import android.content.ComponentName;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.LruCache;
 import android.view.accessibility.AccessibilityEvent;
 
+import androidx.annotation.Nullable;
+import androidx.preference.PreferenceManager;
+
 public class RotationAccessibilityService extends AccessibilityService {
 
     public static final String APPLICATION_PACKAGE = RotationAccessibilityService.class.getPackage().getName();
@@ -12,7 +22,51 @@ public class RotationAccessibilityService extends AccessibilityService {
 
     private static final String TAG = RotationAccessibilityService.class.getSimpleName();
 
+    /* how long a package has to stay in front before its preset is applied */
+    public static final long SETTLE_DELAY_MILLISECOND = 300;
+
+    private static final int ACTIVITY_CACHE_SIZE = 128;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mSettle = new Runnable() {
+        @Override
+        public void run() {
+            onPackageSettled();
+        }
+    };
+
+    /* whether a package/class pair is an activity, the package manager call is a binder transaction */
+    private final LruCache<String, Boolean> activityClasses = new LruCache<>(ACTIVITY_CACHE_SIZE);
+
+    /* kept strongly, the preferences only hold weak references to their listeners */
+    private final SharedPreferences.OnSharedPreferenceChangeListener mRulesListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, @Nullable String key) {
+            if (previousPackageName == null || !getString(R.string.preset_rules_key).equals(key)) {
+                return;
+            }
+
+            /* posted, so that the configuration has compiled the new rules by the time it runs */
+            mHandler.removeCallbacks(mSettle);
+            mHandler.post(mSettle);
+        }
+    };
+
+    private final PresetRules.Categories mCategories = new PresetRules.Categories() {
+        @Override
+        public int getCategory(String packageName) {
+            try {
+                return getPackageManager().getApplicationInfo(packageName, 0).category;
+            } catch (PackageManager.NameNotFoundException __) {
+                return ApplicationInfo.CATEGORY_UNDEFINED;
+            }
+        }
+    };
+
+    private SharedPreferences mPreferences;
     private String previousPackageName;
+    private long previousEventRealtimeNanos;
+    private @Nullable String previousClassName;
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
@@ -21,7 +75,16 @@ public class RotationAccessibilityService extends AccessibilityService {
             return;
         }
 
-        cancelNotification();
+        boolean traced = RotationTrace.begin("onAccessibilityEvent", "type", "window_state_changed", "package", event.getPackageName());
+        try {
+            onWindowStateChanged(event);
+        } finally {
+            RotationTrace.end(traced);
+        }
+    }
+
+    private void onWindowStateChanged(AccessibilityEvent event) {
+        RotationService.cancelPresetsNotification(this);
 
         CharSequence packageName = event.getPackageName();
         if (packageName == null) {
@@ -29,18 +92,19 @@ public class RotationAccessibilityService extends AccessibilityService {
         }
 
         String currentPackageName = packageName.toString();
-        if (currentPackageName.equals(previousPackageName)) {
+        CharSequence className = event.getClassName();
+        boolean samePackage = currentPackageName.equals(previousPackageName);
+
+        if (samePackage && (className == null || className.toString().equals(previousClassName))) {
             return;
         }
 
-        if (currentPackageName.equals(APPLICATION_PACKAGE) && QUICK_ACTIONS_DIALOG.contentEquals(event.getClassName())) {
+        if (currentPackageName.equals(APPLICATION_PACKAGE) && QUICK_ACTIONS_DIALOG.contentEquals(className)) {
             return;
         }
 
-        for (String prefix : PresetsActivity.IGNORED_PREFIXES) {
-            if (currentPackageName.startsWith(prefix)) {
-                return;
-            }
+        if (IgnoredPackages.isIgnored(currentPackageName)) {
+            return;
         }
 
         /* ignore overlays */
@@ -48,31 +112,121 @@ public class RotationAccessibilityService extends AccessibilityService {
             return;
         }
 
+        /* dialogs and popups report their own class, they do not change the screen */
+        String activityName = className != null && isActivity(currentPackageName, className.toString()) ? className.toString() : null;
+        if (samePackage && activityName == null) {
+            return;
+        }
+
         previousPackageName = currentPackageName;
-        onPackageChanged(currentPackageName);
+        previousClassName = activityName;
+
+        /* event times are on the uptime base */
+        previousEventRealtimeNanos = SystemClock.elapsedRealtimeNanos() - (SystemClock.uptimeMillis() - event.getEventTime()) * 1_000_000L;
+
+        mHandler.removeCallbacks(mSettle);
+        mHandler.postDelayed(mSettle, SETTLE_DELAY_MILLISECOND);
     }
 
-    private void cancelNotification() {
-        NotificationManager notificationManager = (NotificationManager) getApplicationContext().getSystemService(NOTIFICATION_SERVICE);
-        notificationManager.cancel(RotationService.PRESETS_NOTIFICATION_ID);
+    private boolean isActivity(String packageName, String className) {
+        String key = packageName + '/' + className;
+
+        Boolean activity = activityClasses.get(key);
+        if (activity == null) {
+            try {
+                getPackageManager().getActivityInfo(new ComponentName(packageName, className), 0);
+                activity = true;
+            } catch (PackageManager.NameNotFoundException __) {
+                activity = false;
+            }
+
+            activityClasses.put(key, activity);
+        }
+
+        return activity;
     }
 
-    private void onPackageChanged(String packageName) {
-        Log.d(TAG, String.format("package changed - packageName=%s", packageName));
+    /**
+     * Only the window that stayed in front is resolved, so transient windows (launcher, recents)
+     * never cause a restore and update round trip of their own. The resolved mode only reaches the
+     * service when it differs from what the service currently applies, so a manual change or a restart
+     * of the service is followed by the preset again on the next window change.
+     */
+    private void onPackageSettled() {
+        String packageName = previousPackageName;
+
+        RotationMode mode;
+        boolean tracedResolve = RotationTrace.begin("resolvePreset", packageName);
+        try {
+            mode = PresetIndex.get(mPreferences).lookup(packageName, previousClassName);
+            if (mode == null) {
+                mode = RotationConfig.get(this).getPresetRules().lookup(packageName, mCategories);
+            }
+        } finally {
+            RotationTrace.end(tracedResolve);
+        }
+
+        if (isApplied(mode)) {
+            Log.d(TAG, String.format("window settled, preset already applied - packageName=%s className=%s mode=%s", packageName, previousClassName, mode));
+            return;
+        }
 
-        RotationSharedPreferences preferences = RotationSharedPreferences.from(this);
-        RotationMode mode = preferences.getApplicationMode(packageName);
+        Log.d(TAG, String.format("window changed - packageName=%s className=%s mode=%s", packageName, previousClassName, mode));
+        RotationMetrics.markEvent("window", previousEventRealtimeNanos);
 
-        if (mode != null) {
-            RotationService.notifyPresetsUpdate(this, mode);
-        } else {
-            RotationService.notifyPresetsRestore(this);
+        boolean tracedNotify = RotationTrace.begin("notifyPresets", "package", packageName, "mode", mode);
+        try {
+            if (mode != null) {
+                RotationService.notifyPresetsUpdate(this, mode);
+            } else {
+                RotationService.notifyPresetsRestore(this);
+            }
+        } finally {
+            RotationTrace.end(tracedNotify);
         }
     }
 
+    /**
+     * @return whether the service already runs with the preset, or without any when the mode is null
+     */
+    private static boolean isApplied(@Nullable RotationMode mode) {
+        RotationStateBus.Snapshot snapshot = RotationStateBus.getSnapshot();
+        if (snapshot == null || !snapshot.isStarted()) {
+            return false;
+        }
+
+        if (mode == null) {
+            return !snapshot.isUsingPresets();
+        }
+
+        return snapshot.isUsingPresets() && snapshot.getMode() == mode;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        mPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+    }
+
+    @Override
+    protected void onServiceConnected() {
+        super.onServiceConnected();
+
+        mPreferences.registerOnSharedPreferenceChangeListener(mRulesListener);
+    }
+
     @Override
     public void onInterrupt() {
         Log.d(TAG, "service interrupted");
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+
+        mPreferences.unregisterOnSharedPreferenceChangeListener(mRulesListener);
+        mHandler.removeCallbacks(mSettle);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,281 @@
+package com.rotation.controller;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.PreferenceManager;
+
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * Immutable, typed snapshot of the user configuration.
+ * <p>
+ * The snapshot is built once and rebuilt only when a (non-preset) preference changes, so readers on
+ * hot paths never touch {@link SharedPreferences} nor parse strings. Legacy values are rewritten once
+ * by {@link #migrate} before the first snapshot is built.
+ */
+@Getter
+public class RotationConfig {
+
+    public static final String TAG = RotationConfig.class.getSimpleName();
+
+    public static final String SCHEMA_VERSION_KEY = "config_schema_version";
+    public static final int SCHEMA_VERSION = 1;
+
+    public static final String BUTTON_GUARD = "GUARD";
+    public static final String BUTTON_REFRESH = "REFRESH";
+    public static final String BUTTON_POWER = "POWER";
+    public static final String BUTTON_EXIT = "EXIT";
+
+    /* bits 0 to 6 are the rotation modes, by ordinal */
+    public static final int BUTTON_GUARD_BIT = 1 << 7;
+    public static final int BUTTON_REFRESH_BIT = 1 << 8;
+    public static final int BUTTON_POWER_BIT = 1 << 9;
+    public static final int BUTTON_EXIT_BIT = 1 << 10;
+    public static final int BUTTON_ALL_BITS = (1 << 11) - 1;
+
+    private static final Object LOCK = new Object();
+    private static volatile RotationConfig current;
+    private static SharedPreferences.OnSharedPreferenceChangeListener listener;
+
+    private final boolean serviceEnabled;
+    private final boolean powerOn;
+    private final boolean guard;
+    private final boolean guardForceAutoRotation;
+    private final boolean sensorEngine;
+    private final RotationMode mode;
+    private final boolean showNotification;
+    private final int visibleButtons;
+    private final TileClickBehavior tileClickBehavior;
+    private final boolean closeDialogOnClick;
+    private final boolean startOnBoot;
+    private final boolean refreshOnUnlock;
+    private final int autoLockWaitSeconds;
+    private final boolean autoLockForce;
+    private final RotationMode autoLockMode;
+    private final @Nullable RotationMode chargeConnectMode;
+    private final @Nullable RotationMode chargeDisconnectMode;
+    private final boolean chargeDisconnectRestoresLastUsed;
+    private final PresetRules presetRules;
+    private final DebugLogger.Level debugLogLevel;
+    private final boolean debugLogCaller;
+
+    private RotationConfig(SharedPreferences preferences, Keys keys, @Nullable RotationConfig previous) {
+        RotationMetrics.increment(RotationMetrics.Counter.PREFERENCES_READS);
+
+        serviceEnabled = preferences.getBoolean(keys.serviceEnabled, false);
+        powerOn = preferences.getBoolean(keys.powerOn, true);
+        guard = preferences.getBoolean(keys.guard, true);
+        guardForceAutoRotation = preferences.getBoolean(keys.guardForceAutoRotation, true);
+        sensorEngine = preferences.getBoolean(keys.sensorEngine, false);
+        mode = RotationMode.valueOf(preferences.getString(keys.mode, null), RotationMode.AUTO);
+        showNotification = preferences.getBoolean(keys.showNotification, true);
+        visibleButtons = toButtonBits(preferences.getStringSet(keys.buttons, null));
+        tileClickBehavior = TileClickBehavior.valueOf(preferences.getString(keys.tileClickBehavior, null), TileClickBehavior.TOGGLE_SERVICE);
+        closeDialogOnClick = preferences.getBoolean(keys.closeDialogOnClick, true);
+        startOnBoot = preferences.getBoolean(keys.startOnBoot, false);
+        refreshOnUnlock = preferences.getBoolean(keys.refreshOnUnlock, false);
+        autoLockWaitSeconds = parseInt(preferences.getString(keys.autoLock, "0"), 0);
+        autoLockForce = preferences.getBoolean(keys.autoLockForce, false);
+        autoLockMode = RotationMode.valueOf(preferences.getString(keys.autoLockMode, null), RotationMode.AUTO);
+
+        String connect = preferences.getString(keys.chargeConnectMode, SmartChargeDialogFragment.VALUE_NONE);
+        chargeConnectMode = RotationMode.valueOf(connect, null);
+
+        String disconnect = preferences.getString(keys.chargeDisconnectMode, SmartChargeDialogFragment.VALUE_LAST_USED);
+        chargeDisconnectRestoresLastUsed = SmartChargeDialogFragment.VALUE_LAST_USED.equals(disconnect);
+        chargeDisconnectMode = RotationMode.valueOf(disconnect, null);
+
+        /* keep the already compiled (and memoized) rules unless their source changed */
+        String rules = preferences.getString(keys.presetRules, "");
+        presetRules = previous != null && previous.presetRules.getSource().equals(rules) ? previous.presetRules : PresetRules.compile(rules);
+
+        debugLogLevel = parseLevel(preferences.getString(keys.debugLogLevel, null), DebugLogger.Level.INFO);
+        debugLogCaller = preferences.getBoolean(keys.debugLogCaller, false);
+    }
+
+    public boolean isAutoLockEnabled() {
+        return autoLockWaitSeconds != 0;
+    }
+
+    public boolean isButtonVisible(int buttonBit) {
+        return (visibleButtons & buttonBit) != 0;
+    }
+
+    public boolean isButtonVisible(RotationMode mode) {
+        return isButtonVisible(buttonBit(mode));
+    }
+
+    public static int buttonBit(RotationMode mode) {
+        return 1 << mode.ordinal();
+    }
+
+    public static RotationConfig get(Context context) {
+        RotationConfig config = current;
+        if (config != null) {
+            return config;
+        }
+
+        synchronized (LOCK) {
+            if (current == null) {
+                SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
+                Keys keys = new Keys(context);
+
+                migrate(preferences, keys);
+
+                listener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, @Nullable String key) {
+                        if (key != null && key.startsWith(PresetIndex.PRESETS_KEY_PREFIX)) {
+                            return;
+                        }
+
+                        current = new RotationConfig(sharedPreferences, keys, current);
+                        applyLogging(current);
+                    }
+                };
+                preferences.registerOnSharedPreferenceChangeListener(listener);
+
+                current = new RotationConfig(preferences, keys, null);
+                applyLogging(current);
+            }
+
+            return current;
+        }
+    }
+
+    @VisibleForTesting
+    static void reset() {
+        synchronized (LOCK) {
+            current = null;
+            listener = null;
+        }
+    }
+
+    /**
+     * Bring stored values up to {@link #SCHEMA_VERSION}, each step runs at most once per installation.
+     */
+    static void migrate(SharedPreferences preferences, Keys keys) {
+        int version = preferences.getInt(SCHEMA_VERSION_KEY, 0);
+        if (version >= SCHEMA_VERSION) {
+            return;
+        }
+
+        SharedPreferences.Editor editor = preferences.edit();
+
+        if (version < 1) {
+            String behavior = preferences.getString(keys.tileClickBehavior, null);
+
+            if ("TOGGLE_CONTROL".equals(behavior)) {
+                editor.putString(keys.tileClickBehavior, TileClickBehavior.TOGGLE_SERVICE.name());
+            } else if ("SHOW_MODES_IF_CONTROLLING".equals(behavior) || "ALWAYS_SHOW_MODES".equals(behavior)) {
+                editor.putString(keys.tileClickBehavior, TileClickBehavior.SHOW_MODES.name());
+            }
+        }
+
+        editor.putInt(SCHEMA_VERSION_KEY, SCHEMA_VERSION).apply();
+        Log.i(TAG, String.format("migrated configuration - from=%d to=%d", version, SCHEMA_VERSION));
+    }
+
+    private static void applyLogging(RotationConfig config) {
+        DebugLogger.configure(config.debugLogLevel, config.debugLogCaller);
+    }
+
+    static int toButtonBits(@Nullable Set<String> enabledButtons) {
+        if (enabledButtons == null) {
+            return BUTTON_ALL_BITS;
+        }
+
+        int bits = 0;
+        for (RotationMode mode : RotationMode.values()) {
+            if (enabledButtons.contains(mode.name())) {
+                bits |= buttonBit(mode);
+            }
+        }
+
+        if (enabledButtons.contains(BUTTON_GUARD)) bits |= BUTTON_GUARD_BIT;
+        if (enabledButtons.contains(BUTTON_REFRESH)) bits |= BUTTON_REFRESH_BIT;
+        if (enabledButtons.contains(BUTTON_POWER)) bits |= BUTTON_POWER_BIT;
+        if (enabledButtons.contains(BUTTON_EXIT)) bits |= BUTTON_EXIT_BIT;
+
+        return bits;
+    }
+
+    private static DebugLogger.Level parseLevel(@Nullable String value, DebugLogger.Level defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return DebugLogger.Level.valueOf(value);
+        } catch (IllegalArgumentException __) {
+            return defaultValue;
+        }
+    }
+
+    private static int parseInt(@Nullable String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException __) {
+            return defaultValue;
+        }
+    }
+
+    static class Keys {
+
+        final String serviceEnabled;
+        final String powerOn;
+        final String guard;
+        final String guardForceAutoRotation;
+        final String sensorEngine;
+        final String mode;
+        final String showNotification;
+        final String buttons;
+        final String tileClickBehavior;
+        final String closeDialogOnClick;
+        final String startOnBoot;
+        final String refreshOnUnlock;
+        final String autoLock;
+        final String autoLockForce;
+        final String autoLockMode;
+        final String chargeConnectMode;
+        final String chargeDisconnectMode;
+        final String presetRules;
+        final String debugLogLevel;
+        final String debugLogCaller;
+
+        Keys(Context context) {
+            serviceEnabled = context.getString(R.string.service_enabled_key);
+            powerOn = context.getString(R.string.power_on_key);
+            guard = context.getString(R.string.guard_key);
+            guardForceAutoRotation = context.getString(R.string.guard_force_auto_rotation_key);
+            sensorEngine = context.getString(R.string.sensor_engine_key);
+            mode = context.getString(R.string.mode_key);
+            showNotification = context.getString(R.string.show_notification_key);
+            buttons = context.getString(R.string.buttons_key);
+            tileClickBehavior = context.getString(R.string.tile_click_behavior_key);
+            closeDialogOnClick = context.getString(R.string.close_dialog_on_click_key);
+            startOnBoot = context.getString(R.string.start_on_boot_key);
+            refreshOnUnlock = context.getString(R.string.refresh_on_unlock_key);
+            autoLock = context.getString(R.string.auto_lock_key);
+            autoLockForce = context.getString(R.string.auto_lock_force_key);
+            autoLockMode = context.getString(R.string.auto_lock_mode_key);
+            chargeConnectMode = context.getString(R.string.smart_charge_connect_mode_key);
+            chargeDisconnectMode = context.getString(R.string.smart_charge_disconnect_mode_key);
+            presetRules = context.getString(R.string.preset_rules_key);
+            debugLogLevel = context.getString(R.string.debug_log_level_key);
+            debugLogCaller = context.getString(R.string.debug_log_caller_key);
+        }
+
+    }
+
+}
@@ -0,0 +1,291 @@
+package com.rotation.controller;
+
+import android.os.SystemClock;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Process-wide counters and fixed-memory latency histograms, cheap enough to be always on.
+ * <p>
+ * Latencies follow a change through three stages: the triggering event (tile or dialog tap, app
+ * switch, service intent) to the service processing it ("decision"), the decision to the system
+ * actually being written to ("apply"), and the apply to the display reporting a new rotation. Each
+ * stage is only recorded when the previous one was marked, and stale marks are dropped. The whole
+ * pipeline also shows as an async {@link RotationTrace} slice named after the event source.
+ */
+public class RotationMetrics {
+
+    /* a mark older than this did not lead to the next stage */
+    public static final long MAX_PENDING_NANOSECOND = 5_000_000_000L;
+
+    public enum Counter {
+        SETTINGS_WRITES,
+        OVERLAY_ADDS,
+        OVERLAY_UPDATES,
+        OVERLAY_REMOVES,
+        NOTIFICATIONS_POSTED,
+        SERVICE_INTENTS,
+        PREFERENCES_READS
+    }
+
+    @RequiredArgsConstructor
+    public enum Stage {
+
+        EVENT_TO_DECISION("event->decision"),
+        DECISION_TO_APPLY("decision->apply"),
+        APPLY_TO_ROTATION("apply->rotation");
+
+        private final @Getter String label;
+
+    }
+
+    private static final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private static final Histogram[] histograms = new Histogram[Stage.values().length];
+
+    static {
+        for (int index = 0; index < histograms.length; index++) {
+            histograms[index] = new Histogram();
+        }
+    }
+
+    private static final AtomicLong pendingEvent = new AtomicLong();
+    private static final AtomicLong pendingDecision = new AtomicLong();
+    private static final AtomicLong pendingApply = new AtomicLong();
+
+    private static final AtomicInteger nextPipelineCookie = new AtomicInteger();
+    private static final AtomicInteger pipelineCookie = new AtomicInteger();
+    private static volatile String pipelineName;
+
+    private RotationMetrics() {
+    }
+
+    public static void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    public static long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    public static Histogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * @param source what triggered the event (e.g. "tile"), shown in the trace
+     */
+    public static void markEvent(String source) {
+        markEvent(source, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * @param elapsedRealtimeNanos when the event happened, on the {@link SystemClock#elapsedRealtimeNanos} time base
+     */
+    public static void markEvent(String source, long elapsedRealtimeNanos) {
+        pendingEvent.set(elapsedRealtimeNanos);
+        beginPipeline(source);
+    }
+
+    /**
+     * Mark an event now unless one is already waiting for its decision.
+     */
+    public static void markEventIfNone(String source) {
+        if (pendingEvent.compareAndSet(0, SystemClock.elapsedRealtimeNanos())) {
+            beginPipeline(source);
+        }
+    }
+
+    public static void markDecision() {
+        long now = SystemClock.elapsedRealtimeNanos();
+
+        record(Stage.EVENT_TO_DECISION, pendingEvent.getAndSet(0), now);
+        pendingDecision.set(now);
+    }
+
+    /**
+     * @param changed whether the system was actually written to, else the decision is dropped
+     */
+    public static void markApplied(boolean changed) {
+        long decision = pendingDecision.getAndSet(0);
+        if (!changed) {
+            endPipeline();
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtimeNanos();
+
+        record(Stage.DECISION_TO_APPLY, decision, now);
+        pendingApply.set(now);
+    }
+
+    public static void markRotationObserved() {
+        record(Stage.APPLY_TO_ROTATION, pendingApply.getAndSet(0), SystemClock.elapsedRealtimeNanos());
+        endPipeline();
+    }
+
+    private static void beginPipeline(String source) {
+        endPipeline();
+
+        if (!RotationTrace.isEnabled()) {
+            return;
+        }
+
+        int cookie = nextPipelineCookie.incrementAndGet();
+        String name = "pipeline " + source;
+
+        pipelineName = name;
+        pipelineCookie.set(cookie);
+        RotationTrace.beginAsync(name, cookie);
+    }
+
+    private static void endPipeline() {
+        int cookie = pipelineCookie.getAndSet(0);
+        if (cookie != 0) {
+            RotationTrace.endAsync(pipelineName, cookie);
+        }
+    }
+
+    private static void record(Stage stage, long start, long end) {
+        if (start == 0) {
+            return;
+        }
+
+        long duration = end - start;
+        if (duration < 0 || duration > MAX_PENDING_NANOSECOND) {
+            return;
+        }
+
+        histograms[stage.ordinal()].record(duration / 1000);
+    }
+
+    @VisibleForTesting
+    static void reset() {
+        endPipeline();
+        pipelineName = null;
+
+        for (int index = 0; index < counters.length(); index++) {
+            counters.set(index, 0);
+        }
+
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+
+        pendingEvent.set(0);
+        pendingDecision.set(0);
+        pendingApply.set(0);
+    }
+
+    public static void dump(PrintWriter writer) {
+        writer.println("counters:");
+        for (Counter counter : Counter.values()) {
+            writer.println(String.format(Locale.ROOT, "  %s=%d", counter.name().toLowerCase(Locale.ROOT), get(counter)));
+        }
+
+        writer.println("latencies (ms):");
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = getHistogram(stage);
+            writer.println(String.format(Locale.ROOT, "  %s count=%d mean=%.1f p50<=%.1f p90<=%.1f p99<=%.1f max=%.1f",
+                    stage.getLabel(),
+                    histogram.getCount(),
+                    histogram.getMeanMicros() / 1000.0,
+                    histogram.getPercentileMicros(0.5) / 1000.0,
+                    histogram.getPercentileMicros(0.9) / 1000.0,
+                    histogram.getPercentileMicros(0.99) / 1000.0,
+                    histogram.getMaxMicros() / 1000.0));
+        }
+    }
+
+    public static String describe() {
+        StringWriter output = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(output)) {
+            dump(writer);
+        }
+
+        return output.toString();
+    }
+
+    /**
+     * Log2 buckets of microseconds: bucket {@code n} counts durations below {@code 2^n} microseconds
+     * (and at least {@code 2^(n-1)}), the last one everything above.
+     */
+    public static class Histogram {
+
+        public static final int BUCKET_COUNT = 24;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        public void record(long micros) {
+            int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(Math.max(micros, 0)));
+
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sumMicros.addAndGet(micros);
+
+            long max;
+            do {
+                max = maxMicros.get();
+            } while (micros > max && !maxMicros.compareAndSet(max, micros));
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMaxMicros() {
+            return maxMicros.get();
+        }
+
+        public double getMeanMicros() {
+            long total = count.get();
+            return total == 0 ? 0 : (double) sumMicros.get() / total;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the given percentile (between 0 and 1), 0 when empty
+         */
+        public long getPercentileMicros(double percentile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+
+            long threshold = (long) Math.ceil(total * percentile);
+            long cumulative = 0;
+
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                cumulative += buckets.get(bucket);
+                if (cumulative >= threshold) {
+                    return bucket == BUCKET_COUNT - 1 ? maxMicros.get() : Math.min(1L << bucket, maxMicros.get());
+                }
+            }
+
+            return maxMicros.get();
+        }
+
+        void reset() {
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                buckets.set(bucket, 0);
+            }
+
+            count.set(0);
+            sumMicros.set(0);
+            maxMicros.set(0);
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.rotation.controller;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.IdRes;
+import androidx.annotation.Nullable;
+import androidx.annotation.StringRes;
+
+/**
+ * Notification button, label and icon of each {@link RotationMode}, kept out of the enum so that the
+ * mode logic stays free of generated resources.
+ */
+public final class RotationModeResources {
+
+    /* by mode ordinal */
+    private static final int[] VIEW_IDS = {
+            R.id.mode_auto,
+            R.id.mode_portrait,
+            R.id.mode_portrait_reverse,
+            R.id.mode_portrait_sensor,
+            R.id.mode_landscape,
+            R.id.mode_landscape_reverse,
+            R.id.mode_landscape_sensor
+    };
+
+    private static final int[] STRING_IDS = {
+            R.string.mode_auto,
+            R.string.mode_portrait,
+            R.string.mode_portrait_reverse,
+            R.string.mode_portrait_sensor,
+            R.string.mode_landscape,
+            R.string.mode_landscape_reverse,
+            R.string.mode_landscape_sensor
+    };
+
+    private static final int[] DRAWABLE_IDS = {
+            R.drawable.mode_auto,
+            R.drawable.mode_portrait,
+            R.drawable.mode_portrait_reverse,
+            R.drawable.mode_portrait_sensor,
+            R.drawable.mode_landscape,
+            R.drawable.mode_landscape_reverse,
+            R.drawable.mode_landscape_sensor
+    };
+
+    private RotationModeResources() {
+    }
+
+    @IdRes
+    public static int viewId(RotationMode mode) {
+        return VIEW_IDS[mode.ordinal()];
+    }
+
+    @StringRes
+    public static int stringId(RotationMode mode) {
+        return STRING_IDS[mode.ordinal()];
+    }
+
+    @DrawableRes
+    public static int drawableId(RotationMode mode) {
+        return DRAWABLE_IDS[mode.ordinal()];
+    }
+
+    @Nullable
+    public static RotationMode fromViewId(@IdRes int viewId) {
+        return RotationMode.fromViewId(VIEW_IDS, viewId);
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.rotation.controller;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.provider.Settings;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.View;
+import android.view.WindowManager;
+
+import androidx.annotation.Nullable;
+
+import lombok.Getter;
+
+/**
+ * Keeps track of what has already been applied to the system (rotation settings and guard overlay)
+ * and only issues the binder calls for values that actually differ from the desired state.
+ */
+public class RotationReconciler {
+
+    public static final String TAG = RotationReconciler.class.getSimpleName();
+
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private static final Uri ACCELEROMETER_ROTATION_URI = Settings.System.getUriFor(Settings.System.ACCELEROMETER_ROTATION);
+    private static final Uri USER_ROTATION_URI = Settings.System.getUriFor(Settings.System.USER_ROTATION);
+
+    private final Context context;
+    private final ContentResolver contentResolver;
+    private final WindowManager windowManager;
+    private final ContentObserver settingsObserver;
+
+    private @Nullable View overlayView;
+    private @Nullable WindowManager.LayoutParams overlayLayoutParams;
+
+    private @Getter int appliedOverlayOrientation = UNKNOWN;
+    private @Getter int appliedAccelerometerRotation = UNKNOWN;
+    private @Getter int appliedUserRotation = UNKNOWN;
+
+    /* number of writes to the system (settings or overlay), to tell whether an apply changed anything */
+    private @Getter long changeCount = 0;
+
+    public RotationReconciler(Context context, Handler handler) {
+        this.context = context.getApplicationContext();
+        this.contentResolver = this.context.getContentResolver();
+        this.windowManager = (WindowManager) this.context.getSystemService(Context.WINDOW_SERVICE);
+
+        this.settingsObserver = new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange, @Nullable Uri uri) {
+                onSettingChanged(uri);
+            }
+        };
+    }
+
+    public void register() {
+        contentResolver.registerContentObserver(ACCELEROMETER_ROTATION_URI, false, settingsObserver);
+        contentResolver.registerContentObserver(USER_ROTATION_URI, false, settingsObserver);
+    }
+
+    public void unregister() {
+        contentResolver.unregisterContentObserver(settingsObserver);
+        invalidate();
+    }
+
+    /**
+     * Forget the applied settings values, the next writes will always go through.
+     */
+    public void invalidate() {
+        appliedAccelerometerRotation = UNKNOWN;
+        appliedUserRotation = UNKNOWN;
+    }
+
+    public boolean isOverlayAttached() {
+        return overlayView != null;
+    }
+
+    public void applyAccelerometerRotation(int value) {
+        if (appliedAccelerometerRotation == value) {
+            return;
+        }
+
+        Settings.System.putInt(contentResolver, Settings.System.ACCELEROMETER_ROTATION, value);
+        appliedAccelerometerRotation = value;
+        onChanged(RotationMetrics.Counter.SETTINGS_WRITES);
+
+        Log.d(TAG, String.format("wrote accelerometer rotation - value=%d", value));
+    }
+
+    public void applyUserRotation(int value) {
+        if (appliedUserRotation == value) {
+            return;
+        }
+
+        Settings.System.putInt(contentResolver, Settings.System.USER_ROTATION, value);
+        appliedUserRotation = value;
+        onChanged(RotationMetrics.Counter.SETTINGS_WRITES);
+
+        Log.d(TAG, String.format("wrote user rotation - value=%d", value));
+    }
+
+    /**
+     * Attach the overlay if needed, and only update its layout when the requested orientation differs.
+     */
+    public void applyOverlayOrientation(int screenOrientation) {
+        if (overlayView == null) {
+            overlayLayoutParams = newOverlayLayoutParams();
+            overlayLayoutParams.screenOrientation = screenOrientation;
+
+            overlayView = new View(context);
+            overlayView.addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+                @Override
+                public void onViewAttachedToWindow(View v) {
+                    DebugLogger.log(context, "Overlay View attached to window");
+                }
+
+                @Override
+                public void onViewDetachedFromWindow(View v) {
+                    DebugLogger.log(context, "Overlay View detached from window");
+                }
+            });
+
+            windowManager.addView(overlayView, overlayLayoutParams);
+            appliedOverlayOrientation = screenOrientation;
+            onChanged(RotationMetrics.Counter.OVERLAY_ADDS);
+
+            DebugLogger.log(context, "Overlay View added. orientation=" + screenOrientation);
+            return;
+        }
+
+        if (appliedOverlayOrientation == screenOrientation) {
+            return;
+        }
+
+        overlayLayoutParams.screenOrientation = screenOrientation;
+        windowManager.updateViewLayout(overlayView, overlayLayoutParams);
+        appliedOverlayOrientation = screenOrientation;
+        onChanged(RotationMetrics.Counter.OVERLAY_UPDATES);
+
+        DebugLogger.log(context, DebugLogger.Level.DEBUG, TAG, "Overlay View updated. orientation=" + screenOrientation);
+    }
+
+    /**
+     * Stop enforcing any orientation without detaching the window, so that the next guard
+     * activation is a single layout update instead of a remove and add.
+     */
+    public void parkOverlay() {
+        if (overlayView == null) {
+            return;
+        }
+
+        applyOverlayOrientation(ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED);
+    }
+
+    public void removeOverlay() {
+        if (overlayView == null) {
+            return;
+        }
+
+        windowManager.removeView(overlayView);
+        overlayView = null;
+        overlayLayoutParams = null;
+        appliedOverlayOrientation = UNKNOWN;
+        onChanged(RotationMetrics.Counter.OVERLAY_REMOVES);
+
+        DebugLogger.log(context, "Overlay View removed");
+    }
+
+    private void onChanged(RotationMetrics.Counter counter) {
+        changeCount++;
+        RotationMetrics.increment(counter);
+    }
+
+    private void onSettingChanged(@Nullable Uri uri) {
+        /* also called for our own writes, in which case the value read back simply matches */
+        if (uri == null || ACCELEROMETER_ROTATION_URI.equals(uri)) {
+            appliedAccelerometerRotation = Settings.System.getInt(contentResolver, Settings.System.ACCELEROMETER_ROTATION, UNKNOWN);
+        }
+
+        if (uri == null || USER_ROTATION_URI.equals(uri)) {
+            appliedUserRotation = Settings.System.getInt(contentResolver, Settings.System.USER_ROTATION, UNKNOWN);
+        }
+
+        Log.d(TAG, String.format("settings changed - uri=%s accelerometer=%d user=%d", uri, appliedAccelerometerRotation, appliedUserRotation));
+    }
+
+    private static WindowManager.LayoutParams newOverlayLayoutParams() {
+        return new WindowManager.LayoutParams(
+                0,
+                0,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE,
+                Gravity.TOP
+        );
+    }
+
+}
@@ -1,13 +1,11 @@
 package com.rotation.controller;
 
-import android.app.ActivityManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.content.BroadcastReceiver;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
@@ -18,11 +16,10 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
-import android.view.Gravity;
 import android.view.View;
-import android.view.WindowManager;
 import android.widget.RemoteViews;
 import android.widget.Toast;
 
@@ -31,7 +28,9 @@ import androidx.annotation.StringRes;
 import androidx.core.app.NotificationCompat;
 import androidx.preference.PreferenceManager;
 
-import java.util.Set;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.List;
 
 import lombok.Data;
 import lombok.Getter;
@@ -74,44 +73,70 @@ public class RotationService extends Service {
 
     public static final String TINT_METHOD = "setColorFilter";
 
-    public static final String ACTION_NOTIFY_CREATED = "com.rotation.controller.SERVICE_CREATED";
-    public static final String ACTION_NOTIFY_DESTROYED = "com.rotation.controller.SERVICE_DESTROYED";
-    public static final String ACTION_NOTIFY_UPDATED = "com.rotation.controller.SERVICE_UPDATED";
+    public static final long COMMAND_FLUSH_DELAY_MILLISECOND = 16;
+    public static final long NOTIFICATION_THROTTLE_MILLISECOND = COMMAND_FLUSH_DELAY_MILLISECOND;
+
+    /* unknown after a process start (a previous run may have left it behind), so assume it is */
+    private static volatile boolean presetsNotificationShown = true;
+
+    private static final int NOTIFICATION_KEY_NONE = -1;
+    private static final int NOTIFICATION_KEY_HIDDEN = -2;
 
     private final Runnable mBroadcastToggleGuardIntent = new Runnable() {
         @Override
         public void run() {
             currentlyRefreshing = false;
             Log.i(TAG, String.format("new new guard=%s", guard));
-            afterStartCommand();
+            scheduleAfterStartCommand();
         }
     };
 
-    private final Runnable mTriggerAutoLock = new Runnable() {
+    private final Runnable mFlushCommands = new Runnable() {
         @Override
         public void run() {
-            Log.i(TAG, "triggering auto lock");
-            triggerAutoLock();
+            flushCommands();
         }
     };
 
-    private final IBinder binder = new LocalBinder();
+    private final Runnable mPostNotification = new Runnable() {
+        @Override
+        public void run() {
+            postNotification();
+        }
+    };
 
-    private @Getter boolean isStarted = false;
-    private @Getter boolean guard = true;
-    private @Getter RotationMode activeMode = RotationMode.AUTO;
-    private @Getter RotationMode previousActiveMode = null;
-    private @Getter boolean currentlyRefreshing = false;
-    private @Getter boolean isPowerOn = true;
+    private final IBinder binder = new LocalBinder();
+    private final CommandQueue mCommandQueue = new CommandQueue();
+    private boolean flushScheduled = false;
+
+    private boolean showNotification = true;
+    private int visibleButtons = RotationConfig.BUTTON_ALL_BITS;
+
+    private RemoteViews mBaseLayout;
+    private PendingIntent mGuardPendingIntent;
+    private PendingIntent mToggleServicePendingIntent;
+    private PendingIntent mExitServicePendingIntent;
+    private PendingIntent mRefreshPendingIntent;
+    private final PendingIntent[] mModePendingIntents = new PendingIntent[RotationMode.values().length];
+    private int postedNotificationKey = NOTIFICATION_KEY_NONE;
+    private long lastNotificationPostUptime = 0;
+
+    /* only accessed on the main thread, other threads read the snapshots published on RotationStateBus */
+    private boolean isStarted = false;
+    private boolean guard = true;
+    private RotationMode activeMode = RotationMode.AUTO;
+    private RotationMode previousActiveMode = null;
+    private boolean currentlyRefreshing = false;
+    private boolean isPowerOn = true;
 
     private @Getter AutoLockSettings autoLock = new AutoLockSettings();
-    private @Getter int lastDisplayRotationValue = -1;
-
-    private View mView;
 
     private Handler mHandler;
+    private RotationReconciler mReconciler;
     private UnlockBroadcastReceiver mUnlockBroadcastReceiver;
-    private OrientationBroadcastReceiver mOrientationReceiver;
+    private DisplayRotationTracker mRotationTracker;
+    private AutoLockDetector mAutoLockDetector;
+    private OrientationEngine mOrientationEngine;
     private ChargeBroadcastReceiver mChargeReceiver;
 
     @Nullable
@@ -129,6 +154,7 @@ public class RotationService extends Service {
         createNotificationChannel(SERVICE_CHANNEL_ID, R.string.service_notification_channel_name);
         createNotificationChannel(WARNING_CHANNEL_ID, R.string.warning_notification_channel_name);
         loadFromPreferences();
+        ServiceRegistry.onCreated(isPowerOn);
 
         if (isPowerOn) {
             saveSystemState();
@@ -136,11 +162,17 @@ public class RotationService extends Service {
 
         mHandler = new Handler(Looper.getMainLooper());
 
+        mReconciler = new RotationReconciler(this, mHandler);
+        mReconciler.register();
+
         mUnlockBroadcastReceiver = new UnlockBroadcastReceiver();
         registerReceiver(mUnlockBroadcastReceiver, new IntentFilter(Intent.ACTION_USER_PRESENT));
 
-        mOrientationReceiver = new OrientationBroadcastReceiver();
-        registerReceiver(mOrientationReceiver, new IntentFilter(Intent.ACTION_CONFIGURATION_CHANGED));
+        mRotationTracker = new DisplayRotationTracker(this, mHandler, this::onRotationChanged);
+        mRotationTracker.register();
+
+        mAutoLockDetector = new AutoLockDetector(mHandler, this::triggerAutoLock);
+        mOrientationEngine = new OrientationEngine(this, mHandler, this::onOrientationChanged);
 
         mChargeReceiver = new ChargeBroadcastReceiver();
         IntentFilter chargeFilter = new IntentFilter();
@@ -148,28 +180,26 @@ public class RotationService extends Service {
         chargeFilter.addAction(Intent.ACTION_POWER_DISCONNECTED);
         registerReceiver(mChargeReceiver, chargeFilter);
 
-        setupAutoLock();
+        updateAutoLock();
 
-        sendBroadcast(new Intent(ACTION_NOTIFY_CREATED));
+        publishState();
     }
 
     @Override
     public void onDestroy() {
         Log.i(TAG, "onDestroy");
+        ServiceRegistry.onDestroyed();
 
-        if (mView != null) {
-            getWindowManager().removeView(mView);
-            mView = null;
-        }
+        mReconciler.removeOverlay();
 
         if (mUnlockBroadcastReceiver != null) {
             unregisterReceiver(mUnlockBroadcastReceiver);
             mUnlockBroadcastReceiver = null;
         }
 
-        if (mOrientationReceiver != null) {
-            unregisterReceiver(mOrientationReceiver);
-            mOrientationReceiver = null;
+        if (mRotationTracker != null) {
+            mRotationTracker.unregister();
+            mRotationTracker = null;
         }
 
         if (mChargeReceiver != null) {
@@ -177,17 +207,23 @@ public class RotationService extends Service {
             mChargeReceiver = null;
         }
 
-        sendBroadcast(new Intent(ACTION_NOTIFY_DESTROYED));
-
         isStarted = false;
+        publishState();
+
         DebugLogger.log(this, "Service onDestroy called. Service stopping.");
 
         getNotificationManager().cancel(NOTIFICATION_ID);
 
         mHandler.removeCallbacks(mBroadcastToggleGuardIntent);
-        mHandler.removeCallbacks(mTriggerAutoLock);
+        mAutoLockDetector.disarm();
+        mOrientationEngine.stop();
+        mHandler.removeCallbacks(mFlushCommands);
+        mHandler.removeCallbacks(mPostNotification);
+        mCommandQueue.clear();
+        flushScheduled = false;
 
         restoreSystemState();
+        mReconciler.unregister();
 
         stopForeground(STOP_FOREGROUND_REMOVE);
         stopSelf();
@@ -195,14 +231,29 @@ public class RotationService extends Service {
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        boolean traced = RotationTrace.begin("onStartCommand", intent != null ? intent.getAction() : null);
+        try {
+            return handleStartCommand(intent, flags, startId);
+        } finally {
+            RotationTrace.end(traced);
+        }
+    }
+
+    private int handleStartCommand(Intent intent, int flags, int startId) {
         if (intent == null) {
             DebugLogger.log(this, "onStartCommand: intent is null");
             return START_NOT_STICKY;
         }
 
         String action = intent.getAction();
-        DebugLogger.log(this, String.format("onStartCommand: action=%s, flags=%d, startId=%d", action, flags, startId));
+        if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+            DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, String.format("onStartCommand: action=%s, flags=%d, startId=%d", action, flags, startId));
+        }
         isStarted = true;
+        ServiceRegistry.onStarted();
+
+        RotationMetrics.increment(RotationMetrics.Counter.SERVICE_INTENTS);
+        RotationMetrics.markEventIfNone("intent");
 
         if (action == null) {
             return START_NOT_STICKY;
@@ -211,19 +262,70 @@ public class RotationService extends Service {
         switch (action) {
             case ACTION_START: {
                 DebugLogger.log(this, "Processing ACTION_START");
-                Notification notification = createNotification(isNotificationShown());
+                Notification notification = createNotification(showNotification);
 
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
                     startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
                 } else {
                     startForeground(NOTIFICATION_ID, notification);
                 }
+                RotationMetrics.increment(RotationMetrics.Counter.NOTIFICATIONS_POSTED);
+
+                postedNotificationKey = showNotification ? computeNotificationKey() : NOTIFICATION_KEY_NONE;
+                lastNotificationPostUptime = SystemClock.uptimeMillis();
                 break;
             }
 
+            case ACTION_EXIT_SERVICE: {
+                DebugLogger.log(this, "Processing ACTION_EXIT_SERVICE");
+                mCommandQueue.clear();
+                mHandler.removeCallbacks(mFlushCommands);
+                stop(this);
+                return START_NOT_STICKY;
+            }
+        }
+
+        long sequence = mCommandQueue.offer(action, intent.getStringExtra(INTENT_NEW_MODE));
+        Log.d(TAG, String.format("queued command - action=%s sequence=%d pending=%d", action, sequence, mCommandQueue.size()));
+
+        scheduleAfterStartCommand();
+        return START_STICKY;
+    }
+
+    private void scheduleAfterStartCommand() {
+        if (flushScheduled) {
+            return;
+        }
+
+        flushScheduled = true;
+        mHandler.postDelayed(mFlushCommands, COMMAND_FLUSH_DELAY_MILLISECOND);
+    }
+
+    private void flushCommands() {
+        flushScheduled = false;
+        RotationMetrics.markDecision();
+
+        int dropped = mCommandQueue.getDroppedCount();
+        List<CommandQueue.Command> commands = mCommandQueue.drain();
+        if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+            DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, String.format("flushCommands: count=%d, dropped=%d", commands.size(), dropped));
+        }
+
+        for (CommandQueue.Command command : commands) {
+            processCommand(command);
+        }
+
+        afterStartCommand();
+    }
+
+    private void processCommand(CommandQueue.Command command) {
+        String action = command.getAction();
+
+        switch (action) {
             case ACTION_TOGGLE_POWER: {
                 boolean wasEnabled = isPowerOn;
                 isPowerOn = !isPowerOn;
+                ServiceRegistry.onPowerChanged(isPowerOn);
                 DebugLogger.log(this, String.format("Processing ACTION_TOGGLE_POWER. Old=%s, New=%s", wasEnabled, isPowerOn));
 
                 PreferenceManager.getDefaultSharedPreferences(this)
@@ -240,8 +342,10 @@ public class RotationService extends Service {
             }
 
             case ACTION_CHANGE_MODE: {
-                String newModeName = intent.getStringExtra(INTENT_NEW_MODE);
-                DebugLogger.log(this, "Processing ACTION_CHANGE_MODE: " + newModeName);
+                String newModeName = command.getNewMode();
+                if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+                    DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, "Processing ACTION_CHANGE_MODE: " + newModeName);
+                }
                 if (newModeName != null) {
                     activeMode = RotationMode.valueOf(newModeName);
                     PreferenceManager.getDefaultSharedPreferences(this)
@@ -264,24 +368,32 @@ public class RotationService extends Service {
 
             case ACTION_CONFIGURATION_CHANGED:
             case ACTION_REFRESH_MODE: {
-                DebugLogger.log(this, "Processing " + action);
+                if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+                    DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, "Processing " + action);
+                }
                 loadFromPreferences();
                 break;
             }
 
             case ACTION_ORIENTATION_CHANGED: {
-                DebugLogger.log(this, "Processing ACTION_ORIENTATION_CHANGED");
+                if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+                    DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, "Processing ACTION_ORIENTATION_CHANGED");
+                }
                 break;
             }
 
             case ACTION_REFRESH_NOTIFICATION: {
-                DebugLogger.log(this, "Processing ACTION_REFRESH_NOTIFICATION");
+                if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+                    DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, "Processing ACTION_REFRESH_NOTIFICATION");
+                }
                 break;
             }
 
             case ACTION_PRESETS_UPDATE: {
-                String newModeName = intent.getStringExtra(INTENT_NEW_MODE);
-                DebugLogger.log(this, "Processing ACTION_PRESETS_UPDATE: " + newModeName);
+                String newModeName = command.getNewMode();
+                if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+                    DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, "Processing ACTION_PRESETS_UPDATE: " + newModeName);
+                }
                 if (newModeName != null) {
                     if (previousActiveMode == null) {
                         previousActiveMode = activeMode;
@@ -292,82 +404,125 @@ public class RotationService extends Service {
             }
 
             case ACTION_PRESETS_RESTORE: {
-                DebugLogger.log(this, "Processing ACTION_PRESETS_RESTORE");
+                if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+                    DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, "Processing ACTION_PRESETS_RESTORE");
+                }
                 if (previousActiveMode != null) {
                     activeMode = previousActiveMode;
                     previousActiveMode = null;
                 }
                 break;
             }
-
-            case ACTION_EXIT_SERVICE: {
-                DebugLogger.log(this, "Processing ACTION_EXIT_SERVICE");
-                stop(this);
-                return START_NOT_STICKY;
-            }
         }
-
-        // ...
-        
-        afterStartCommand();
-        return START_STICKY;
     }
 
     private void afterStartCommand() {
-        DebugLogger.log(this, String.format("afterStartCommand: guard=%s, mode=%s, powerOn=%s", guard, activeMode, isPowerOn));
-        applyMode();
+        if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+            DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, String.format("afterStartCommand: guard=%s, mode=%s, powerOn=%s", guard, activeMode, isPowerOn));
+        }
+        boolean traced = RotationTrace.begin("afterStartCommand", "mode", activeMode, "power", isPowerOn);
+        try {
+            updateOrientationEngine();
+
+            long changeCount = mReconciler.getChangeCount();
+            boolean tracedApply = RotationTrace.begin("applyMode", "mode", activeMode, "guard", isGuardEnabledOrForced());
+            try {
+                applyMode();
+            } finally {
+                RotationTrace.end(tracedApply);
+            }
+            RotationMetrics.markApplied(mReconciler.getChangeCount() != changeCount);
 
-        // ... notification logic ...
-        NotificationManager notificationManager = getNotificationManager();
-        if (isNotificationShown()) {
-            notificationManager.notify(NOTIFICATION_ID, createNotification(true));
-        } else {
-            notificationManager.cancel(NOTIFICATION_ID);
+            boolean tracedNotification = RotationTrace.begin("updateNotification");
+            try {
+                updateNotification();
+            } finally {
+                RotationTrace.end(tracedNotification);
+            }
+            updateAutoLock();
+
+            publishState();
+        } finally {
+            RotationTrace.end(traced);
         }
+    }
+
+    private void publishState() {
+        RotationStateBus.Snapshot snapshot = RotationStateBus.publish(ServiceRegistry.getState(), isPowerOn, activeMode, previousActiveMode, guard, currentlyRefreshing);
+        TileState.update(this, snapshot);
+    }
 
-        DebugLogger.log(this, "Sending ACTION_NOTIFY_UPDATED broadcast");
-        sendBroadcast(new Intent(ACTION_NOTIFY_UPDATED));
+    private void onRotationChanged(int rotation) {
+        RotationMetrics.markRotationObserved();
+        mAutoLockDetector.onRotationChanged(rotation);
 
-        // ...
+        mCommandQueue.offer(ACTION_ORIENTATION_CHANGED, null);
+        scheduleAfterStartCommand();
     }
 
-    private void setupAutoLock() {
-        mHandler.removeCallbacks(mTriggerAutoLock);
+    private void onOrientationChanged(int rotation) {
+        mCommandQueue.offer(ACTION_ORIENTATION_CHANGED, null);
+        scheduleAfterStartCommand();
+    }
 
-        boolean isEnabled = autoLock.isEnabled() && !currentlyRefreshing;
-        if (!isEnabled) {
-            Log.d(TAG, String.format("setupAutoLock not enabled - autoLockWait=%s currentlyRefreshing=%s", autoLock.isEnabled(), currentlyRefreshing));
-            return;
-        }
+    /**
+     * Run the in-app orientation engine while it is enabled and the active mode follows the sensor.
+     */
+    private void updateOrientationEngine() {
+        int allowedRotations = getSensorRotations(activeMode);
 
-        if (!RotationMode.AUTO.equals(activeMode)) {
-            Log.d(TAG, String.format("setupAutoLock cancelled - activeMode=%s", activeMode));
+        if (!isStarted || !isPowerOn || allowedRotations == 0 || !RotationConfig.get(this).isSensorEngine()) {
+            mOrientationEngine.stop();
             return;
         }
 
-        lastDisplayRotationValue = getCurrentDisplayRotation();
-        Log.d(TAG, String.format("setupAutoLock - lastDisplayRotationValue=%s", lastDisplayRotationValue));
+        mOrientationEngine.start(allowedRotations);
+    }
 
-        mHandler.postDelayed(mTriggerAutoLock, autoLock.getWaitSeconds() * 1000L);
+    private static int getSensorRotations(RotationMode mode) {
+        switch (mode) {
+            case AUTO:
+                return OrientationEstimator.ALL_ROTATIONS;
+            case PORTRAIT_SENSOR:
+                return OrientationEstimator.PORTRAIT_ROTATIONS;
+            case LANDSCAPE_SENSOR:
+                return OrientationEstimator.LANDSCAPE_ROTATIONS;
+            default:
+                return 0;
+        }
     }
 
-    private void triggerAutoLock() {
-        if (lastDisplayRotationValue == -1) {
-            lastDisplayRotationValue = getCurrentDisplayRotation();
+    /**
+     * Wait for the display rotation to be stable while in auto mode, stop waiting otherwise.
+     */
+    private void updateAutoLock() {
+        boolean isEnabled = autoLock.isEnabled() && !currentlyRefreshing;
+        if (!isEnabled || !RotationMode.AUTO.equals(activeMode)) {
+            if (mAutoLockDetector.isArmed()) {
+                Log.d(TAG, String.format("auto lock disarmed - autoLockWait=%s currentlyRefreshing=%s activeMode=%s", autoLock.isEnabled(), currentlyRefreshing, activeMode));
+                mAutoLockDetector.disarm();
+            }
+            return;
         }
 
-        RotationMode newMode = RotationMode.fromPreferences(this, R.string.auto_lock_mode_key, RotationMode.AUTO);
+        mAutoLockDetector.arm(mRotationTracker.getRotation(), autoLock.getWaitSeconds() * 1000L);
+    }
+
+    private void triggerAutoLock(int stableRotation) {
+        Log.i(TAG, String.format("triggering auto lock - stableRotation=%d", stableRotation));
+
+        RotationMode newMode = RotationConfig.get(this).getAutoLockMode();
         if (newMode == RotationMode.AUTO) {
-            newMode = RotationMode.fromRotationValue(lastDisplayRotationValue);
+            newMode = RotationMode.fromRotationValue(stableRotation);
         } else if (!autoLock.isForce()) {
-            RotationMode currentMode = RotationMode.fromRotationValue(getCurrentDisplayRotation());
+            RotationMode currentMode = RotationMode.fromRotationValue(stableRotation);
 
             if (!isCompatible(newMode, currentMode)) {
                 return;
             }
         }
 
-        Toast.makeText(this, getString(R.string.auto_lock_trigger, getString(newMode.stringId())), Toast.LENGTH_SHORT).show();
+        Toast.makeText(this, getString(R.string.auto_lock_trigger, getString(RotationModeResources.stringId(newMode))), Toast.LENGTH_SHORT).show();
 
         PreferenceManager.getDefaultSharedPreferences(this)
                 .edit()
@@ -393,7 +548,59 @@ public class RotationService extends Service {
         return false;
     }
 
+    private void updateNotification() {
+        mHandler.removeCallbacks(mPostNotification);
+
+        long elapsed = SystemClock.uptimeMillis() - lastNotificationPostUptime;
+        if (elapsed < NOTIFICATION_THROTTLE_MILLISECOND) {
+            mHandler.postDelayed(mPostNotification, NOTIFICATION_THROTTLE_MILLISECOND - elapsed);
+            return;
+        }
+
+        postNotification();
+    }
+
+    private void postNotification() {
+        int key = showNotification ? computeNotificationKey() : NOTIFICATION_KEY_HIDDEN;
+        if (key == postedNotificationKey) {
+            Log.d(TAG, "notification unchanged, not posting");
+            return;
+        }
+
+        NotificationManager notificationManager = getNotificationManager();
+        if (showNotification) {
+            notificationManager.notify(NOTIFICATION_ID, createNotification(true));
+        } else {
+            notificationManager.cancel(NOTIFICATION_ID);
+        }
+        RotationMetrics.increment(RotationMetrics.Counter.NOTIFICATIONS_POSTED);
+
+        postedNotificationKey = key;
+        lastNotificationPostUptime = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Everything that changes how the controls notification looks, packed in a single int.
+     */
+    private int computeNotificationKey() {
+        int key = activeMode.ordinal();
+        key |= (isPowerOn ? 1 : 0) << 3;
+        key |= (isGuardEnabledOrForced() ? 1 : 0) << 4;
+        key |= visibleButtons << 5;
+
+        return key;
+    }
+
     private Notification createNotification(boolean showNotification) {
+        boolean traced = RotationTrace.begin("createNotification", "mode", activeMode, "show", showNotification);
+        try {
+            return buildNotification(showNotification);
+        } finally {
+            RotationTrace.end(traced);
+        }
+    }
+
+    private Notification buildNotification(boolean showNotification) {
         String channelId = showNotification
                 ? CONTROLS_CHANNEL_ID
                 : SERVICE_CHANNEL_ID;
@@ -406,21 +613,12 @@ public class RotationService extends Service {
                 .setVisibility(NotificationCompat.VISIBILITY_SECRET);
 
         if (showNotification) {
-            RemoteViews layout = new RemoteViews(getPackageName(), R.layout.notification);
-            layout.setOnClickPendingIntent(R.id.guard, newGuardPendingIntent());
-            layout.setOnClickPendingIntent(R.id.toggle_service, newToggleServicePendingIntent());
-            layout.setOnClickPendingIntent(R.id.exit_service, newExitServicePendingIntent());
-            layout.setOnClickPendingIntent(R.id.refresh, newRefreshPendingIntent());
-
-            for (RotationMode mode : RotationMode.values()) {
-                // Log.i(TAG, String.format("attach intent - mode=%s viewId=%d", mode, mode.viewId()));
-                layout.setOnClickPendingIntent(mode.viewId(), newModePendingIntent(mode));
-            }
+            RemoteViews layout = new RemoteViews(getBaseLayout());
 
             notificationBuilder
                     .setCustomContentView(layout)
                     .setCustomBigContentView(layout)
-                    .setDeleteIntent(newRefreshPendingIntent());
+                    .setDeleteIntent(getRefreshPendingIntent());
 
             notificationBuilder
                     .setSubText(null);
@@ -441,9 +639,22 @@ public class RotationService extends Service {
         return notificationBuilder.build();
     }
 
-    private boolean isNotificationShown() {
-        return PreferenceManager.getDefaultSharedPreferences(this)
-                .getBoolean(getString(R.string.show_notification_key), true);
+    private RemoteViews getBaseLayout() {
+        if (mBaseLayout == null) {
+            RemoteViews layout = new RemoteViews(getPackageName(), R.layout.notification);
+            layout.setOnClickPendingIntent(R.id.guard, getGuardPendingIntent());
+            layout.setOnClickPendingIntent(R.id.toggle_service, getToggleServicePendingIntent());
+            layout.setOnClickPendingIntent(R.id.exit_service, getExitServicePendingIntent());
+            layout.setOnClickPendingIntent(R.id.refresh, getRefreshPendingIntent());
+
+            for (RotationMode mode : RotationMode.values()) {
+                layout.setOnClickPendingIntent(RotationModeResources.viewId(mode), getModePendingIntent(mode));
+            }
+
+            mBaseLayout = layout;
+        }
+
+        return mBaseLayout;
     }
 
     private Notification createPresetsNotification() {
@@ -467,63 +678,35 @@ public class RotationService extends Service {
     }
 
     private void loadFromPreferences() {
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
+        RotationConfig config = RotationConfig.get(this);
 
-        guard = preferences.getBoolean(getString(R.string.guard_key), true);
-        isPowerOn = preferences.getBoolean(getString(R.string.power_on_key), true);
-        activeMode = RotationMode.fromPreferences(this);
+        guard = config.isGuard();
+        isPowerOn = config.isPowerOn();
+        ServiceRegistry.onPowerChanged(isPowerOn);
+        activeMode = config.getMode();
+        showNotification = config.isShowNotification();
+        visibleButtons = config.getVisibleButtons();
 
-        autoLock.load(preferences);
+        autoLock.load(config);
     }
 
-    public boolean isGuardEnabledOrForced() {
+    private boolean isGuardEnabledOrForced() {
         return (guard || activeMode.doesRequireGuard()) && !currentlyRefreshing;
     }
 
-    public boolean isUsingPresets() {
-        return previousActiveMode != null;
-    }
-
     private void updateViews(RemoteViews layout) {
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
-
-        Set<String> enabledButtons = preferences.getStringSet(getString(R.string.buttons_key), null);
         for (RotationMode mode : RotationMode.values()) {
-            if (enabledButtons != null && !enabledButtons.contains(mode.name())) {
-                layout.setViewVisibility(mode.viewId(), View.GONE);
-            } else {
-                layout.setViewVisibility(mode.viewId(), View.VISIBLE);
-            }
-
-            layout.setInt(mode.viewId(), TINT_METHOD, getColor(R.color.inactive));
+            setViewVisibility(layout, RotationModeResources.viewId(mode), RotationConfig.buttonBit(mode));
+            layout.setInt(RotationModeResources.viewId(mode), TINT_METHOD, getColor(R.color.inactive));
         }
 
-        if (enabledButtons != null && !enabledButtons.contains("POWER")) {
-            layout.setViewVisibility(R.id.toggle_service, View.GONE);
-        } else {
-            layout.setViewVisibility(R.id.toggle_service, View.VISIBLE);
-        }
-
-        if (enabledButtons != null && !enabledButtons.contains("EXIT")) {
-            layout.setViewVisibility(R.id.exit_service, View.GONE);
-        } else {
-            layout.setViewVisibility(R.id.exit_service, View.VISIBLE);
-        }
-
-        if (enabledButtons != null && !enabledButtons.contains("GUARD")) {
-            layout.setViewVisibility(R.id.guard, View.GONE);
-        } else {
-            layout.setViewVisibility(R.id.guard, View.VISIBLE);
-        }
-
-        if (enabledButtons != null && !enabledButtons.contains("REFRESH")) {
-            layout.setViewVisibility(R.id.refresh, View.GONE);
-        } else {
-            layout.setViewVisibility(R.id.refresh, View.VISIBLE);
-        }
+        setViewVisibility(layout, R.id.toggle_service, RotationConfig.BUTTON_POWER_BIT);
+        setViewVisibility(layout, R.id.exit_service, RotationConfig.BUTTON_EXIT_BIT);
+        setViewVisibility(layout, R.id.guard, RotationConfig.BUTTON_GUARD_BIT);
+        setViewVisibility(layout, R.id.refresh, RotationConfig.BUTTON_REFRESH_BIT);
 
         if (isPowerOn) {
-            layout.setInt(activeMode.viewId(), TINT_METHOD, getColor(R.color.active));
+            layout.setInt(RotationModeResources.viewId(activeMode), TINT_METHOD, getColor(R.color.active));
             layout.setInt(R.id.toggle_service, TINT_METHOD, getColor(R.color.active));
             layout.setInt(R.id.exit_service, TINT_METHOD, getColor(R.color.inactive));
             layout.setInt(R.id.refresh, TINT_METHOD, getColor(R.color.inactive));
@@ -541,67 +724,42 @@ public class RotationService extends Service {
         }
     }
 
-    private void applyMode() {
-        ContentResolver contentResolver = getContentResolver();
+    private void setViewVisibility(RemoteViews layout, int viewId, int buttonBit) {
+        layout.setViewVisibility(viewId, (visibleButtons & buttonBit) != 0 ? View.VISIBLE : View.GONE);
+    }
 
-        if (!isStarted || !isPowerOn) {
-            if (mView != null) {
-                getWindowManager().removeView(mView);
-                mView = null;
-            }
+    private void applyMode() {
+        if (!isStarted) {
+            mReconciler.removeOverlay();
             return;
         }
 
-        if (isGuardEnabledOrForced()) {
-            WindowManager.LayoutParams layoutParams = new WindowManager.LayoutParams(
-                    0,
-                    0,
-                    WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
-                    WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE,
-                    Gravity.TOP
-            );
-            layoutParams.screenOrientation = activeMode.orientationValue();
-
-            if (mView == null) {
-                mView = new View(getApplicationContext());
-                mView.addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
-                    @Override
-                    public void onViewAttachedToWindow(View v) {
-                        DebugLogger.log(getApplicationContext(), "Overlay View attached to window");
-                    }
+        if (!isPowerOn) {
+            mReconciler.parkOverlay();
+            return;
+        }
 
-                    @Override
-                    public void onViewDetachedFromWindow(View v) {
-                        DebugLogger.log(getApplicationContext(), "Overlay View detached from window");
-                    }
-                });
-                getWindowManager().addView(mView, layoutParams);
-                DebugLogger.log(this, "Overlay View added. isShown=" + mView.isShown());
-            } else {
-                getWindowManager().updateViewLayout(mView, layoutParams);
-                DebugLogger.log(this, "Overlay View updated. isShown=" + mView.isShown());
-            }
+        /* once the orientation engine decided, the sensor mode is applied like the matching fixed mode */
+        RotationMode effectiveMode = activeMode;
+        int engineRotation = mOrientationEngine.getRotation();
+        if (engineRotation != OrientationEstimator.UNKNOWN) {
+            effectiveMode = RotationMode.fromRotationValue(engineRotation);
+        }
 
-            boolean forceAutoRotation = PreferenceManager.getDefaultSharedPreferences(this)
-                    .getBoolean(getString(R.string.guard_force_auto_rotation_key), true);
+        if (isGuardEnabledOrForced()) {
+            mReconciler.applyOverlayOrientation(effectiveMode.orientationValue());
 
-            if (forceAutoRotation) {
-                Settings.System.putInt(contentResolver, Settings.System.ACCELEROMETER_ROTATION, 1);
-                DebugLogger.log(this, "System Auto-Rotation forced ON by Guard");
-            } else {
-                DebugLogger.log(this, "System Auto-Rotation NOT forced (preference disabled)");
+            if (engineRotation == OrientationEstimator.UNKNOWN && RotationConfig.get(this).isGuardForceAutoRotation()) {
+                mReconciler.applyAccelerometerRotation(1);
             }
         } else {
-            if (mView != null) {
-                getWindowManager().removeView(mView);
-                mView = null;
-            }
+            mReconciler.parkOverlay();
 
-            if (activeMode.shouldUseAccelerometerRotation()) {
-                Settings.System.putInt(contentResolver, Settings.System.ACCELEROMETER_ROTATION, 1);
+            if (effectiveMode.shouldUseAccelerometerRotation()) {
+                mReconciler.applyAccelerometerRotation(1);
             } else {
-                Settings.System.putInt(contentResolver, Settings.System.ACCELEROMETER_ROTATION, 0);
-                Settings.System.putInt(contentResolver, Settings.System.USER_ROTATION, activeMode.rotationValue());
+                mReconciler.applyAccelerometerRotation(0);
+                mReconciler.applyUserRotation(effectiveMode.rotationValue());
             }
         }
     }
@@ -617,6 +775,48 @@ public class RotationService extends Service {
         getNotificationManager().createNotificationChannel(notificationChannel);
     }
 
+    private PendingIntent getRefreshPendingIntent() {
+        if (mRefreshPendingIntent == null) {
+            mRefreshPendingIntent = newRefreshPendingIntent();
+        }
+
+        return mRefreshPendingIntent;
+    }
+
+    private PendingIntent getToggleServicePendingIntent() {
+        if (mToggleServicePendingIntent == null) {
+            mToggleServicePendingIntent = newToggleServicePendingIntent();
+        }
+
+        return mToggleServicePendingIntent;
+    }
+
+    private PendingIntent getExitServicePendingIntent() {
+        if (mExitServicePendingIntent == null) {
+            mExitServicePendingIntent = newExitServicePendingIntent();
+        }
+
+        return mExitServicePendingIntent;
+    }
+
+    private PendingIntent getGuardPendingIntent() {
+        if (mGuardPendingIntent == null) {
+            mGuardPendingIntent = newGuardPendingIntent();
+        }
+
+        return mGuardPendingIntent;
+    }
+
+    private PendingIntent getModePendingIntent(RotationMode mode) {
+        PendingIntent pendingIntent = mModePendingIntents[mode.ordinal()];
+        if (pendingIntent == null) {
+            pendingIntent = newModePendingIntent(mode);
+            mModePendingIntents[mode.ordinal()] = pendingIntent;
+        }
+
+        return pendingIntent;
+    }
+
     private PendingIntent newRefreshPendingIntent() {
         Intent intent = new Intent(getApplicationContext(), RotationService.class);
         intent.setAction(ACTION_REFRESH_NOTIFICATION);
@@ -686,16 +886,6 @@ public class RotationService extends Service {
         );
     }
 
-    private int getCurrentDisplayRotation() {
-        return getWindowManager().getDefaultDisplay().getRotation();
-    }
-
-    public boolean hasRotationValueChanged() {
-        int rotationValue = getCurrentDisplayRotation();
-
-        return lastDisplayRotationValue != rotationValue;
-    }
-
     private boolean isCharging() {
         Intent intent = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
         if (intent == null) return false;
@@ -738,10 +928,6 @@ public class RotationService extends Service {
         return (NotificationManager) getApplicationContext().getSystemService(NOTIFICATION_SERVICE);
     }
 
-    private WindowManager getWindowManager() {
-        return (WindowManager) getApplicationContext().getSystemService(WINDOW_SERVICE);
-    }
-
     public static void start(Context context) {
         RotationSharedPreferences.from(context).setServiceEnabled(true);
 
@@ -772,17 +958,6 @@ public class RotationService extends Service {
         context.startService(intent);
     }
 
-    public static void notifyOrientationChanged(Context context) {
-        if (!isRunning(context)) {
-            return;
-        }
-
-        Intent intent = new Intent(context.getApplicationContext(), RotationService.class);
-        intent.setAction(ACTION_ORIENTATION_CHANGED);
-
-        context.startService(intent);
-    }
-
     public static void notifyPresetsUpdate(Context context, RotationMode newMode) {
         if (!isRunning(context)) {
             return;
@@ -816,15 +991,21 @@ public class RotationService extends Service {
     }
 
     public static boolean isRunning(Context context) {
-        ActivityManager manager = (ActivityManager) context.getSystemService(ACTIVITY_SERVICE);
+        return ServiceRegistry.isRunning(context);
+    }
 
-        for (ActivityManager.RunningServiceInfo serviceInfo : manager.getRunningServices(Integer.MAX_VALUE)) {
-            if (RotationService.class.getName().equals(serviceInfo.service.getClassName())) {
-                return true;
-            }
+    /**
+     * Cancel the presets notification, skipping the binder call when it is known not to be shown.
+     */
+    public static void cancelPresetsNotification(Context context) {
+        if (!presetsNotificationShown) {
+            return;
         }
 
-        return false;
+        presetsNotificationShown = false;
+
+        NotificationManager notificationManager = (NotificationManager) context.getApplicationContext().getSystemService(NOTIFICATION_SERVICE);
+        notificationManager.cancel(PRESETS_NOTIFICATION_ID);
     }
 
     private void saveSystemState() {
@@ -850,15 +1031,28 @@ public class RotationService extends Service {
         int userRotation = prefs.getInt(getString(R.string.saved_user_rotation_key), -1);
 
         if (accelRotation != -1) {
-            Settings.System.putInt(getContentResolver(), Settings.System.ACCELEROMETER_ROTATION, accelRotation);
+            mReconciler.applyAccelerometerRotation(accelRotation);
         }
         if (userRotation != -1) {
-            Settings.System.putInt(getContentResolver(), Settings.System.USER_ROTATION, userRotation);
+            mReconciler.applyUserRotation(userRotation);
         }
 
         Log.i(TAG, String.format("Restored system state: accel=%d, user=%d", accelRotation, userRotation));
     }
 
+    /**
+     * {@code adb shell dumpsys activity service com.rotation.controller/.RotationService}
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println(String.format("state: started=%s powerOn=%s mode=%s previousMode=%s guard=%s refreshing=%s", isStarted, isPowerOn, activeMode, previousActiveMode, isGuardEnabledOrForced(), currentlyRefreshing));
+        writer.println(String.format("reconciler: overlay=%d accelerometer=%d user=%d", mReconciler.getAppliedOverlayOrientation(), mReconciler.getAppliedAccelerometerRotation(), mReconciler.getAppliedUserRotation()));
+        writer.println(String.format("engine: running=%s rotation=%d", mOrientationEngine.isRunning(), mOrientationEngine.getRotation()));
+        writer.println(String.format("autoLock: armed=%s", mAutoLockDetector.isArmed()));
+
+        RotationMetrics.dump(writer);
+    }
+
     public class LocalBinder extends Binder {
 
         public RotationService getService() {
@@ -874,10 +1068,10 @@ public class RotationService extends Service {
         private int waitSeconds;
         private boolean force;
 
-        public void load(SharedPreferences preferences) {
-            this.waitSeconds = Integer.parseInt(preferences.getString(getString(R.string.auto_lock_key), "0"));
-            this.enabled = this.waitSeconds != 0;
-            this.force = preferences.getBoolean(getString(R.string.auto_lock_force_key), false);
+        public void load(RotationConfig config) {
+            this.waitSeconds = config.getAutoLockWaitSeconds();
+            this.enabled = config.isAutoLockEnabled();
+            this.force = config.isAutoLockForce();
         }
 
     }
@@ -891,38 +1085,42 @@ public class RotationService extends Service {
             }
 
             String action = intent.getAction();
-            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+            RotationConfig config = RotationConfig.get(context);
 
             if (Intent.ACTION_POWER_CONNECTED.equals(action)) {
-                String modeStr = preferences.getString(getString(R.string.smart_charge_connect_mode_key), SmartChargeDialogFragment.VALUE_NONE);
-                if (SmartChargeDialogFragment.VALUE_NONE.equals(modeStr)) {
+                RotationMode connectMode = config.getChargeConnectMode();
+                if (connectMode == null) {
                     return;
                 }
 
-                Log.i(TAG, "Charger connected, applying " + modeStr);
+                Log.i(TAG, "Charger connected, applying " + connectMode);
                 // Save current activeMode before overriding for charge mode
-                preferences.edit()
+                PreferenceManager.getDefaultSharedPreferences(context)
+                        .edit()
                         .putString(getString(R.string.saved_original_mode_for_charge_key), activeMode.name())
                         .apply();
 
-                activeMode = RotationMode.valueOf(modeStr);
-                afterStartCommand();
+                activeMode = connectMode;
+                scheduleAfterStartCommand();
             } else if (Intent.ACTION_POWER_DISCONNECTED.equals(action)) {
-                String modeStr = preferences.getString(getString(R.string.smart_charge_disconnect_mode_key), SmartChargeDialogFragment.VALUE_LAST_USED);
-                if (SmartChargeDialogFragment.VALUE_NONE.equals(modeStr)) {
-                    return;
-                }
+                if (config.isChargeDisconnectRestoresLastUsed()) {
+                    Log.i(TAG, "Charger disconnected, restoring last used mode");
 
-                Log.i(TAG, "Charger disconnected, applying " + modeStr);
-                if (SmartChargeDialogFragment.VALUE_LAST_USED.equals(modeStr)) {
                     // Restore original activeMode
-                    String originalModeName = preferences.getString(getString(R.string.saved_original_mode_for_charge_key), RotationMode.AUTO.name());
-                    activeMode = RotationMode.valueOf(originalModeName);
+                    String originalModeName = PreferenceManager.getDefaultSharedPreferences(context)
+                            .getString(getString(R.string.saved_original_mode_for_charge_key), RotationMode.AUTO.name());
+                    activeMode = RotationMode.valueOf(originalModeName, RotationMode.AUTO);
                 } else {
-                    activeMode = RotationMode.valueOf(modeStr);
+                    RotationMode disconnectMode = config.getChargeDisconnectMode();
+                    if (disconnectMode == null) {
+                        return;
+                    }
+
+                    Log.i(TAG, "Charger disconnected, applying " + disconnectMode);
+                    activeMode = disconnectMode;
                 }
 
-                afterStartCommand();
+                scheduleAfterStartCommand();
             }
         }
     }
@@ -3,7 +3,6 @@ package com.rotation.controller;
 import android.content.Context;
 import android.content.SharedPreferences;
 
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.preference.PreferenceManager;
 
@@ -45,24 +44,44 @@ public class RotationSharedPreferences {
 
     @Nullable
     public RotationMode getApplicationMode(String packageName) {
-        String key = getApplicationKey(packageName);
+        RotationMetrics.increment(RotationMetrics.Counter.PREFERENCES_READS);
+
+        String key = PresetIndex.getApplicationKey(packageName);
         String value = preferences.getString(key, null);
 
         return RotationMode.valueOf(value, null);
     }
 
     public void setApplicationMode(String packageName, @Nullable RotationMode newMode) {
-        String key = getApplicationKey(packageName);
+        String key = PresetIndex.getApplicationKey(packageName);
         if (newMode != null) {
             preferences.edit().putString(key, newMode.toString()).apply();
         } else {
             preferences.edit().remove(key).apply();
         }
+
+        PresetIndex.onPresetChanged(packageName, null, newMode);
     }
 
-    @NonNull
-    public static String getApplicationKey(String packageName) {
-        return "presets/" + packageName + "/mode";
+    @Nullable
+    public RotationMode getActivityMode(String packageName, String className) {
+        RotationMetrics.increment(RotationMetrics.Counter.PREFERENCES_READS);
+
+        String key = PresetIndex.getActivityKey(packageName, className);
+        String value = preferences.getString(key, null);
+
+        return RotationMode.valueOf(value, null);
+    }
+
+    public void setActivityMode(String packageName, String className, @Nullable RotationMode newMode) {
+        String key = PresetIndex.getActivityKey(packageName, className);
+        if (newMode != null) {
+            preferences.edit().putString(key, newMode.toString()).apply();
+        } else {
+            preferences.edit().remove(key).apply();
+        }
+
+        PresetIndex.onPresetChanged(packageName, className, newMode);
     }
 
     public static RotationSharedPreferences from(Context context) {
@@ -0,0 +1,119 @@
+package com.rotation.controller;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * In-process publication of the {@link RotationService} state.
+ * <p>
+ * The service publishes an immutable, versioned {@link Snapshot} whenever its state changes. Reading
+ * the current snapshot is lock-free and consistent from any thread, and subscribers are handed each new
+ * snapshot on the main thread, in publication order, instead of receiving a broadcast and re-reading
+ * the preferences.
+ */
+public class RotationStateBus {
+
+    public interface Listener {
+
+        /**
+         * Called on the main thread.
+         */
+        void onStateChanged(Snapshot snapshot);
+
+    }
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private static volatile @Nullable Snapshot current;
+
+    private RotationStateBus() {
+    }
+
+    /**
+     * @return the last published snapshot, or {@code null} while the service has not been created in this process
+     */
+    @Nullable
+    public static Snapshot getSnapshot() {
+        return current;
+    }
+
+    @VisibleForTesting
+    static synchronized void reset() {
+        current = null;
+        listeners.clear();
+    }
+
+    public static void subscribe(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    static Snapshot publish(ServiceRegistry.State serviceState, boolean powerOn, RotationMode mode, @Nullable RotationMode previousMode, boolean guard, boolean refreshing) {
+        Snapshot snapshot;
+        synchronized (RotationStateBus.class) {
+            long version = current != null ? current.version + 1 : 1;
+            snapshot = new Snapshot(version, serviceState, powerOn, mode, previousMode, guard, refreshing);
+            current = snapshot;
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            dispatch(snapshot);
+        } else {
+            handler.post(() -> dispatch(snapshot));
+        }
+
+        return snapshot;
+    }
+
+    private static void dispatch(Snapshot snapshot) {
+        for (Listener listener : listeners) {
+            listener.onStateChanged(snapshot);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Snapshot {
+
+        private final long version;
+        private final ServiceRegistry.State serviceState;
+        private final boolean powerOn;
+        private final RotationMode mode;
+
+        /* the mode to restore once the presets no longer apply */
+        private final @Nullable RotationMode previousMode;
+
+        private final boolean guard;
+        private final boolean refreshing;
+
+        public boolean isRunning() {
+            return serviceState == ServiceRegistry.State.CREATED || serviceState == ServiceRegistry.State.STARTED;
+        }
+
+        public boolean isStarted() {
+            return serviceState == ServiceRegistry.State.STARTED;
+        }
+
+        public boolean isUsingPresets() {
+            return previousMode != null;
+        }
+
+        public boolean isGuardEnabledOrForced() {
+            return (guard || mode.doesRequireGuard()) && !refreshing;
+        }
+
+    }
+
+}
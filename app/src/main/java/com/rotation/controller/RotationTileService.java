@@ -1,57 +1,44 @@
 package com.rotation.controller;
 
-import android.content.BroadcastReceiver;
-import android.content.ComponentName;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.ServiceConnection;
-import android.content.SharedPreferences;
-import android.graphics.Bitmap;
-import android.graphics.BlendMode;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.drawable.Drawable;
 import android.graphics.drawable.Icon;
-import android.os.IBinder;
 import android.service.quicksettings.Tile;
 import android.service.quicksettings.TileService;
 import android.util.Log;
 
-import androidx.core.content.ContextCompat;
-import androidx.preference.PreferenceManager;
-
-public class RotationTileService extends TileService implements ServiceConnection {
+public class RotationTileService extends TileService {
 
     public static final String TAG = RotationTileService.class.getSimpleName();
 
     private Listener mListener;
-    private RotationService mService;
 
+    /**
+     * Render from memory only: the in-process snapshot when the service lives in this process, else the
+     * persisted {@link TileState}. The service requests listening whenever what the tile shows changes.
+     */
     @Override
     public void onStartListening() {
         super.onStartListening();
 
         Log.i(TAG, "onStartListening");
-        DebugLogger.log(this, "onStartListening");
+        DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, "onStartListening");
 
         if (mListener == null) {
             mListener = new Listener();
-
-            IntentFilter filter = new IntentFilter();
-            filter.addAction(RotationService.ACTION_NOTIFY_CREATED);
-            filter.addAction(RotationService.ACTION_NOTIFY_UPDATED);
-            filter.addAction(RotationService.ACTION_NOTIFY_DESTROYED);
-
-            ContextCompat.registerReceiver(this, mListener, filter, ContextCompat.RECEIVER_EXPORTED);
+            RotationStateBus.subscribe(mListener);
         }
 
-        if (mService == null) {
-            Intent intent = new Intent(this, RotationService.class);
-            bindService(intent, this, Context.BIND_AUTO_CREATE);
+        RotationStateBus.Snapshot snapshot = RotationStateBus.getSnapshot();
+        if (snapshot != null) {
+            updateTile(snapshot);
+            return;
         }
 
-        updateTile(RotationService.isRunning(this));
+        int state = TileState.get(this);
+        if (state != TileState.UNKNOWN) {
+            updateTile(state);
+        } else {
+            updateTile(RotationService.isRunning(this));
+        }
     }
 
     @Override
@@ -59,30 +46,12 @@ public class RotationTileService extends TileService implements ServiceConnectio
         super.onStopListening();
 
         Log.i(TAG, "onStopListening");
-        DebugLogger.log(this, "onStopListening");
+        DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, "onStopListening");
 
         if (mListener != null) {
-            unregisterReceiver(mListener);
+            RotationStateBus.unsubscribe(mListener);
             mListener = null;
         }
-
-        if (mService != null) {
-            unbindService(this);
-            mService = null;
-        }
-    }
-
-    @Override
-    public void onServiceConnected(ComponentName className, IBinder service) {
-        RotationService.LocalBinder binder = (RotationService.LocalBinder) service;
-        mService = binder.getService();
-
-        updateTileUsingService();
-    }
-
-    @Override
-    public void onServiceDisconnected(ComponentName className) {
-        mService = null;
     }
 
     @Override
@@ -90,6 +59,7 @@ public class RotationTileService extends TileService implements ServiceConnectio
         super.onClick();
 
         Log.i(TAG, "onClick");
+        RotationMetrics.markEvent("tile");
         DebugLogger.log(this, "onClick");
 
         // If Service is visually OFF, ANY click starts it.
@@ -101,7 +71,7 @@ public class RotationTileService extends TileService implements ServiceConnectio
         }
 
         // If Service is ON, check behavior
-        TileClickBehavior tileClickBehavior = TileClickBehavior.fromPreferences(this);
+        TileClickBehavior tileClickBehavior = RotationConfig.get(this).getTileClickBehavior();
         DebugLogger.log(this, String.format("onClick: Service is ON. Behavior=%s", tileClickBehavior));
 
         switch (tileClickBehavior) {
@@ -129,14 +99,13 @@ public class RotationTileService extends TileService implements ServiceConnectio
     }
 
     private boolean isVisualServiceOff() {
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
-        boolean serviceEnabledPref = preferences.getBoolean(getString(R.string.service_enabled_key), false);
-        
-        if (mService != null) {
-            return !mService.isStarted();
+        RotationStateBus.Snapshot snapshot = RotationStateBus.getSnapshot();
+        if (snapshot != null) {
+            return !snapshot.isStarted();
         }
-        
-        return !serviceEnabledPref;
+
+        // Not created in this process, only a pending sticky restart can make it running
+        return !RotationService.isRunning(this);
     }
 
     public void setTileUnavailable() {
@@ -146,13 +115,13 @@ public class RotationTileService extends TileService implements ServiceConnectio
     }
 
     public void updateTile(boolean running) {
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
-        boolean serviceEnabled = preferences.getBoolean(getString(R.string.service_enabled_key), false);
+        RotationConfig config = RotationConfig.get(this);
+        boolean serviceEnabled = config.isServiceEnabled();
 
-        RotationMode activeMode = RotationMode.fromPreferences(this);
-        boolean guard = preferences.getBoolean(getString(R.string.guard_key), true);
+        RotationMode activeMode = config.getMode();
+        boolean guard = config.isGuard();
         boolean presets = false;
-        boolean powerOn = preferences.getBoolean(getString(R.string.power_on_key), true);
+        boolean powerOn = config.isPowerOn();
 
         // Visual state: ON only if preference is true AND it's actually running (started)
         // However, if we just bound to it, 'running' is true. 
@@ -160,27 +129,58 @@ public class RotationTileService extends TileService implements ServiceConnectio
         updateTile(serviceEnabled && running, powerOn, activeMode, guard, presets);
     }
 
-    public void updateTileUsingService() {
-        RotationMode activeMode = mService.getActiveMode();
-        boolean guard = mService.isGuardEnabledOrForced();
-        boolean presets = mService.isUsingPresets();
-        boolean powerOn = mService.isPowerOn();
-        boolean isStarted = mService.isStarted();
+    public void updateTile(int state) {
+        // Stale after a force stop, the service could not record that it went away
+        boolean running = TileState.isRunning(state) && RotationConfig.get(this).isServiceEnabled();
+
+        updateTile(running, TileState.isPowerOn(state), TileState.getMode(state), TileState.isGuard(state), TileState.isPresets(state), TileState.getBehavior(state));
+    }
+
+    public void updateTile(RotationStateBus.Snapshot snapshot) {
+        switch (snapshot.getServiceState()) {
+            case STARTED: {
+                updateTile(true, snapshot.isPowerOn(), snapshot.getMode(), snapshot.isGuardEnabledOrForced(), snapshot.isUsingPresets());
+                break;
+            }
+
+            case DESTROYED: {
+                updateTile(false);
+                break;
+            }
 
-        updateTile(isStarted, powerOn, activeMode, guard, presets);
+            default: {
+                // Created (e.g. only bound) but not started yet, the preferences tell what it will do
+                updateTile(true);
+                break;
+            }
+        }
     }
 
     public void updateTile(boolean running, boolean powerOn, RotationMode activeMode, boolean guard, boolean presets) {
-        DebugLogger.log(this, String.format("updateTile: running=%s, powerOn=%s, mode=%s, guard=%s", running, powerOn, activeMode, guard));
+        updateTile(running, powerOn, activeMode, guard, presets, RotationConfig.get(this).getTileClickBehavior());
+    }
+
+    public void updateTile(boolean running, boolean powerOn, RotationMode activeMode, boolean guard, boolean presets, TileClickBehavior behavior) {
+        boolean traced = RotationTrace.begin("updateTile", "mode", activeMode, "running", running);
+        try {
+            renderTile(running, powerOn, activeMode, guard, presets, behavior);
+        } finally {
+            RotationTrace.end(traced);
+        }
+    }
+
+    private void renderTile(boolean running, boolean powerOn, RotationMode activeMode, boolean guard, boolean presets, TileClickBehavior behavior) {
+        if (DebugLogger.isLoggable(DebugLogger.Level.DEBUG)) {
+            DebugLogger.log(this, DebugLogger.Level.DEBUG, TAG, String.format("updateTile: running=%s, powerOn=%s, mode=%s, guard=%s", running, powerOn, activeMode, guard));
+        }
         Tile tile = getQsTile();
-        TileClickBehavior behavior = TileClickBehavior.fromPreferences(this);
 
         // Condition 1: Service OFF -> Tile Inactive, "Service Off"
         if (!running) {
             tile.setState(Tile.STATE_INACTIVE);
             tile.setLabel(getString(R.string.tile_title));
             tile.setSubtitle(getString(R.string.tile_service_off));
-            tile.setIcon(Icon.createWithResource(this, R.drawable.mode_auto)); // Default/Inactive icon
+            tile.setIcon(getIconWith(RotationMode.AUTO, false, false)); // Default/Inactive icon
             tile.updateTile();
             return;
         }
@@ -209,7 +209,7 @@ public class RotationTileService extends TileService implements ServiceConnectio
                 tile.setState(Tile.STATE_INACTIVE);
                 tile.setLabel(getString(R.string.tile_title));
                 tile.setSubtitle(getString(R.string.tile_power_off));
-                tile.setIcon(Icon.createWithResource(this, R.drawable.mode_auto)); // Or specific off icon
+                tile.setIcon(getIconWith(RotationMode.AUTO, false, false)); // Or specific off icon
             }
 
         } else { // SHOW_MODES
@@ -241,9 +241,9 @@ public class RotationTileService extends TileService implements ServiceConnectio
                 
                 // Let's display the Mode, maybe with a visual cue?
                 // For now, simple:
-                tile.setSubtitle(getString(activeMode.stringId()) + suffix);
+                tile.setSubtitle(getString(RotationModeResources.stringId(activeMode)) + suffix);
             } else {
-                 tile.setSubtitle(getString(activeMode.stringId()) + suffix);
+                 tile.setSubtitle(getString(RotationModeResources.stringId(activeMode)) + suffix);
             }
             
             tile.setIcon(getIconWith(activeMode, guard, presets));
@@ -253,112 +253,24 @@ public class RotationTileService extends TileService implements ServiceConnectio
         Log.d(TAG, String.format("updated tile - running=%s power=%s activeMode=%s", running, powerOn, activeMode));
     }
 
-    public class Listener extends BroadcastReceiver {
+    public class Listener implements RotationStateBus.Listener {
 
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (intent == null) {
-                return;
-            }
-
-            String action = intent.getAction();
-            if (action == null) {
-                return;
-            }
-
-            Log.d(TAG, String.format("received intent - action=%s", action));
-            DebugLogger.log(context, String.format("Tile Listener received: %s", action));
+        public void onStateChanged(RotationStateBus.Snapshot snapshot) {
+            Log.d(TAG, String.format("received state - version=%d serviceState=%s", snapshot.getVersion(), snapshot.getServiceState()));
+            DebugLogger.log(RotationTileService.this, DebugLogger.Level.DEBUG, TAG, "Tile Listener received: " + snapshot.getServiceState());
 
-            switch (action) {
-                case RotationService.ACTION_NOTIFY_CREATED: {
-                    updateTile(true);
-                    break;
-                }
-
-                case RotationService.ACTION_NOTIFY_UPDATED: {
-                    if (mService != null) {
-                        updateTileUsingService();
-                    }
-
-                    break;
-                }
-
-                case RotationService.ACTION_NOTIFY_DESTROYED: {
-                    updateTile(false);
-                    break;
-                }
-            }
+            updateTile(snapshot);
         }
     }
 
     public Icon getIconWith(RotationMode mode, boolean guard, boolean presets) {
-        if (!guard && !presets) {
-            return Icon.createWithResource(this, mode.drawableId());
-        }
-
-        Bitmap mainBitmap = getBitmapFromDrawable(getDrawable(mode.drawableId()));
-        Canvas canvas = new Canvas(mainBitmap);
-
-        if (guard) {
-            Bitmap bitmap = getBitmapFromDrawable(getDrawable(R.drawable.guard));
-            Bitmap scaledBitmap = scaledBitmap(bitmap, 0.4f);
-
-            int left = mainBitmap.getWidth() - scaledBitmap.getWidth();
-            int top = mainBitmap.getHeight() - scaledBitmap.getHeight();
-
-            {
-                float centerX = left + (scaledBitmap.getWidth() / 2f);
-                float centerY = top + (scaledBitmap.getHeight() / 2f);
-                float radius = (scaledBitmap.getWidth() / 2f) * 1.05f;
-
-                Paint paint = new Paint();
-                paint.setBlendMode(BlendMode.CLEAR);
-                paint.setStyle(Paint.Style.FILL);
-                canvas.drawCircle(centerX, centerY, radius, paint);
-            }
-
-            canvas.drawBitmap(scaledBitmap, left, top, null);
+        boolean traced = RotationTrace.begin("getIconWith", "mode", mode, "guard", guard);
+        try {
+            return TileIconCache.get(this).getIcon(mode, guard, presets);
+        } finally {
+            RotationTrace.end(traced);
         }
-
-        if (presets) {
-            Bitmap bitmap = getBitmapFromDrawable(getDrawable(R.drawable.icon_smart_toy));
-            Bitmap scaledBitmap = scaledBitmap(bitmap, 0.4f);
-
-            int left = 0;
-            int top = 0;
-
-            {
-                float centerX = left + (scaledBitmap.getWidth() / 2f);
-                float centerY = top + (scaledBitmap.getHeight() / 2f);
-                float radius = (scaledBitmap.getWidth() / 2f) * 1.05f;
-
-                Paint paint = new Paint();
-                paint.setBlendMode(BlendMode.CLEAR);
-                paint.setStyle(Paint.Style.FILL);
-                canvas.drawCircle(centerX, centerY, radius, paint);
-            }
-
-            canvas.drawBitmap(scaledBitmap, left, top, null);
-        }
-
-        return Icon.createWithBitmap(mainBitmap);
-    }
-
-    private static Bitmap scaledBitmap(Bitmap original, float scale) {
-        int width = (int) (original.getWidth() * scale);
-        int height = (int) (original.getHeight() * scale);
-
-        return Bitmap.createScaledBitmap(original, width, height, true);
-    }
-
-    private static Bitmap getBitmapFromDrawable(Drawable drawable) {
-        Bitmap bitmap = Bitmap.createBitmap(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-
-        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-        drawable.draw(canvas);
-
-        return bitmap;
     }
 
 }
\ No newline at end of file
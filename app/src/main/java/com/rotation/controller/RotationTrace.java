@@ -0,0 +1,136 @@
+package com.rotation.controller;
+
+import android.os.Trace;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Named sections and async slices for system traces (Perfetto, systrace).
+ * <p>
+ * Section names carry arguments (event type, mode...), only concatenated when tracing is on, so that
+ * a disabled trace costs a single check. Each {@code begin} returns whether it opened a section, to be
+ * handed to the matching {@link #end}, so that a trace starting or stopping in between never leaves
+ * an unbalanced section. Tests can install a {@link Sink} to capture the spans on the
+ * JVM instead of sending them to {@link Trace}.
+ */
+public class RotationTrace {
+
+    /* the platform truncates longer names */
+    public static final int MAX_NAME_LENGTH = 127;
+
+    public interface Sink {
+
+        void beginSection(String name);
+
+        void endSection();
+
+        void beginAsyncSection(String name, int cookie);
+
+        void endAsyncSection(String name, int cookie);
+
+    }
+
+    private static volatile @Nullable Sink sink;
+
+    private RotationTrace() {
+    }
+
+    @VisibleForTesting
+    public static void setSink(@Nullable Sink newSink) {
+        sink = newSink;
+    }
+
+    public static boolean isEnabled() {
+        return sink != null || Trace.isEnabled();
+    }
+
+    /**
+     * @return whether a section was opened, for {@link #end}
+     */
+    public static boolean begin(String name) {
+        if (!isEnabled()) {
+            return false;
+        }
+
+        beginSection(name);
+        return true;
+    }
+
+    public static boolean begin(String name, Object argument) {
+        if (!isEnabled()) {
+            return false;
+        }
+
+        beginSection(name + " " + argument);
+        return true;
+    }
+
+    public static boolean begin(String name, String key, Object value) {
+        if (!isEnabled()) {
+            return false;
+        }
+
+        beginSection(name + " " + key + "=" + value);
+        return true;
+    }
+
+    public static boolean begin(String name, String key, Object value, String otherKey, Object otherValue) {
+        if (!isEnabled()) {
+            return false;
+        }
+
+        beginSection(name + " " + key + "=" + value + " " + otherKey + "=" + otherValue);
+        return true;
+    }
+
+    /**
+     * Must follow every {@code begin}, on the same thread, even when tracing was off.
+     *
+     * @param began what the matching {@code begin} returned
+     */
+    public static void end(boolean began) {
+        if (!began) {
+            return;
+        }
+
+        Sink current = sink;
+        if (current != null) {
+            current.endSection();
+        } else {
+            Trace.endSection();
+        }
+    }
+
+    public static void beginAsync(String name, int cookie) {
+        Sink current = sink;
+        if (current != null) {
+            current.beginAsyncSection(name, cookie);
+        } else if (Trace.isEnabled()) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+    }
+
+    public static void endAsync(String name, int cookie) {
+        Sink current = sink;
+        if (current != null) {
+            current.endAsyncSection(name, cookie);
+        } else if (Trace.isEnabled()) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    private static void beginSection(String name) {
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH);
+        }
+
+        Sink current = sink;
+        if (current != null) {
+            current.beginSection(name);
+        } else {
+            Trace.beginSection(name);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.rotation.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Recorded accelerometer samples that can be replayed through an {@link OrientationEstimator}.
+ * <p>
+ * Plain text, one sample per line: {@code <timestamp nanoseconds> <x> <y> <z>}, separated by spaces.
+ * Empty lines and lines starting with {@code #} are ignored.
+ */
+public class SensorTrace {
+
+    public static final String FILE_NAME = "sensor_trace.txt";
+
+    private final @Getter List<Sample> samples;
+
+    public SensorTrace(List<Sample> samples) {
+        this.samples = Collections.unmodifiableList(samples);
+    }
+
+    public static SensorTrace read(Reader reader) throws IOException {
+        BufferedReader input = new BufferedReader(reader);
+        List<Sample> samples = new ArrayList<>();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split("\\s+");
+            if (fields.length != 4) {
+                throw new IOException(String.format("invalid sample - line=%d", lineNumber));
+            }
+
+            try {
+                samples.add(new Sample(Long.parseLong(fields[0]), Float.parseFloat(fields[1]), Float.parseFloat(fields[2]), Float.parseFloat(fields[3])));
+            } catch (NumberFormatException e) {
+                throw new IOException(String.format("invalid sample - line=%d", lineNumber), e);
+            }
+        }
+
+        return new SensorTrace(samples);
+    }
+
+    public void write(Writer writer) throws IOException {
+        writer.write("# timestamp_ns x y z\n");
+
+        for (Sample sample : samples) {
+            writer.write(String.format(Locale.ROOT, "%d %.4f %.4f %.4f\n", sample.timestampNanos, sample.x, sample.y, sample.z));
+        }
+    }
+
+    /**
+     * Feed every sample to the estimator.
+     *
+     * @return the rotation decisions, in order, each with the timestamp of the sample that caused it
+     */
+    public List<Decision> replay(OrientationEstimator estimator) {
+        List<Decision> decisions = new ArrayList<>();
+        int rotation = estimator.getRotation();
+
+        for (Sample sample : samples) {
+            int newRotation = estimator.onSample(sample.timestampNanos, sample.x, sample.y, sample.z);
+            if (newRotation != rotation) {
+                decisions.add(new Decision(sample.timestampNanos, newRotation));
+                rotation = newRotation;
+            }
+        }
+
+        return decisions;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Sample {
+
+        private final long timestampNanos;
+        private final float x;
+        private final float y;
+        private final float z;
+
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Decision {
+
+        private final long timestampNanos;
+        private final int rotation;
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.rotation.controller;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * In-process view of the {@link RotationService} lifecycle.
+ * <p>
+ * The service lives in the application process, so once it went through {@code onCreate} here the
+ * registry is authoritative and can be queried without any IPC. Only before the first lifecycle
+ * callback of a fresh process (e.g. while a sticky restart is still pending) does it fall back,
+ * once, to asking the {@link ActivityManager}.
+ */
+public class ServiceRegistry {
+
+    public static final String TAG = ServiceRegistry.class.getSimpleName();
+
+    public enum State {
+        UNKNOWN,
+        CREATED,
+        STARTED,
+        DESTROYED
+    }
+
+    private static volatile State state = State.UNKNOWN;
+    private static volatile boolean powerOn = false;
+    private static volatile Boolean fallbackRunning = null;
+
+    private ServiceRegistry() {
+    }
+
+    public static State getState() {
+        return state;
+    }
+
+    @VisibleForTesting
+    static void reset() {
+        state = State.UNKNOWN;
+        powerOn = false;
+        fallbackRunning = null;
+    }
+
+    static void onCreated(boolean isPowerOn) {
+        powerOn = isPowerOn;
+        fallbackRunning = null;
+        state = State.CREATED;
+    }
+
+    static void onStarted() {
+        state = State.STARTED;
+    }
+
+    static void onPowerChanged(boolean isPowerOn) {
+        powerOn = isPowerOn;
+    }
+
+    static void onDestroyed() {
+        powerOn = false;
+        state = State.DESTROYED;
+    }
+
+    /**
+     * Whether the service exists (created, started or only bound), like the old {@code getRunningServices} scan.
+     */
+    public static boolean isRunning(Context context) {
+        State current = state;
+        if (current != State.UNKNOWN) {
+            return current == State.CREATED || current == State.STARTED;
+        }
+
+        Boolean cached = fallbackRunning;
+        if (cached != null) {
+            return cached;
+        }
+
+        boolean running = queryActivityManager(context);
+        fallbackRunning = running;
+
+        return running;
+    }
+
+    public static boolean isStarted() {
+        return state == State.STARTED;
+    }
+
+    /**
+     * Whether the service is started and actively applying the rotation mode (i.e. not paused).
+     */
+    public static boolean isEnforcing() {
+        return state == State.STARTED && powerOn;
+    }
+
+    private static boolean queryActivityManager(Context context) {
+        if (!RotationConfig.get(context).isServiceEnabled()) {
+            return false;
+        }
+
+        Log.i(TAG, "no lifecycle event seen in this process, asking activity manager");
+
+        ActivityManager manager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        for (ActivityManager.RunningServiceInfo serviceInfo : manager.getRunningServices(Integer.MAX_VALUE)) {
+            if (RotationService.class.getName().equals(serviceInfo.service.getClassName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
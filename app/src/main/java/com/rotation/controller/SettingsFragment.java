@@ -26,6 +26,7 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
+import androidx.preference.EditTextPreference;
 import androidx.preference.ListPreference;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
@@ -103,10 +104,25 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
             preference.setOnPreferenceClickListener(this);
         }
 
+        {
+            String key = getString(R.string.preset_rules_key);
+
+            EditTextPreference preference = findPreference(key);
+            preference.setOnBindEditTextListener(editText -> {
+                editText.setSingleLine(false);
+                editText.setMinLines(3);
+            });
+        }
+
         {
             String key = getString(R.string.smart_charge_key);
             findPreference(key).setOnPreferenceClickListener(this);
         }
+
+        {
+            String key = getString(R.string.diagnostics_key);
+            findPreference(key).setOnPreferenceClickListener(this);
+        }
     }
 
     @Override
@@ -186,6 +202,8 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
             }
         } else if (getString(R.string.smart_charge_key).equals(key)) {
             new SmartChargeDialogFragment().show(getParentFragmentManager(), SmartChargeDialogFragment.TAG);
+        } else if (getString(R.string.diagnostics_key).equals(key)) {
+            startActivity(new Intent(context, DiagnosticsActivity.class));
         }
 
         return true;
@@ -291,7 +309,7 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, @Nullable String key) {
         Log.i(TAG, String.format("onSharedPreferenceChanged - key=%s", key));
-        DebugLogger.log(getContext(), String.format("onSharedPreferenceChanged: key=%s", key));
+        DebugLogger.log(getContext(), DebugLogger.Level.DEBUG, TAG, "onSharedPreferenceChanged: key=" + key);
 
         Context context = getContext();
         if (context == null) {
@@ -308,20 +326,26 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
                 || getString(R.string.auto_lock_mode_key).equals(key)
                 || getString(R.string.auto_lock_force_key).equals(key)
                 || getString(R.string.power_on_key).equals(key)
-                || getString(R.string.guard_force_auto_rotation_key).equals(key)) {
+                || getString(R.string.guard_force_auto_rotation_key).equals(key)
+                || getString(R.string.sensor_engine_key).equals(key)) {
             // TODO should not be called if edit comes from service itself
             RotationService.notifyConfigurationChanged(context);
         }
 
+        if (getString(R.string.tile_click_behavior_key).equals(key)) {
+            /* read it here, the configuration snapshot may not be rebuilt yet */
+            TileState.updateBehavior(context, TileClickBehavior.valueOf(sharedPreferences.getString(key, null), TileClickBehavior.TOGGLE_SERVICE));
+        }
+
         refresh(sharedPreferences);
     }
 
     private void refresh(SharedPreferences sharedPreferences) {
-        DebugLogger.log(getContext(), "refreshing UI state from preferences");
+        DebugLogger.log(getContext(), DebugLogger.Level.DEBUG, TAG, "refreshing UI state from preferences");
         {
             String key = getString(R.string.service_enabled_key);
             boolean value = sharedPreferences.getBoolean(key, false);
-            DebugLogger.log(getContext(), String.format("refresh: setting %s to %s", key, value));
+            DebugLogger.log(getContext(), DebugLogger.Level.DEBUG, TAG, String.format("refresh: setting %s to %s", key, value));
             SwitchPreferenceCompat pref = (SwitchPreferenceCompat) findPreference(key);
             if (pref != null) {
                 pref.setChecked(value);
@@ -364,7 +388,7 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
         boolean isEnabled = !"0".equals(getPreferenceScreen().getSharedPreferences().getString(getString(R.string.auto_lock_key), "0"));
         findPreference(getString(R.string.auto_lock_mode_key)).setEnabled(isEnabled);
 
-        boolean isModeAuto = RotationMode.AUTO.equals(RotationMode.fromPreferences(getContext(), R.string.auto_lock_mode_key, RotationMode.AUTO));
+        boolean isModeAuto = RotationMode.AUTO.equals(RotationMode.valueOf(getPreferenceScreen().getSharedPreferences().getString(getString(R.string.auto_lock_mode_key), null), RotationMode.AUTO));
         findPreference(getString(R.string.auto_lock_force_key)).setEnabled(isEnabled && !isModeAuto);
     }
 
@@ -57,7 +57,7 @@ public class SmartChargeDialogFragment extends DialogFragment {
         List<ModeItem> connectItems = new ArrayList<>();
         connectItems.add(new ModeItem(VALUE_NONE, context.getString(R.string.mode_none)));
         for (RotationMode mode : RotationMode.values()) {
-            connectItems.add(new ModeItem(mode.name(), context.getString(mode.stringId())));
+            connectItems.add(new ModeItem(mode.name(), context.getString(RotationModeResources.stringId(mode))));
         }
         ArrayAdapter<ModeItem> connectAdapter = new ArrayAdapter<>(context, android.R.layout.simple_spinner_dropdown_item, connectItems);
         mConnectSpinner.setAdapter(connectAdapter);
@@ -68,7 +68,7 @@ public class SmartChargeDialogFragment extends DialogFragment {
         disconnectItems.add(new ModeItem(VALUE_NONE, context.getString(R.string.mode_none)));
         disconnectItems.add(new ModeItem(VALUE_LAST_USED, context.getString(R.string.mode_last_used)));
         for (RotationMode mode : RotationMode.values()) {
-            disconnectItems.add(new ModeItem(mode.name(), context.getString(mode.stringId())));
+            disconnectItems.add(new ModeItem(mode.name(), context.getString(RotationModeResources.stringId(mode))));
         }
         ArrayAdapter<ModeItem> disconnectAdapter = new ArrayAdapter<>(context, android.R.layout.simple_spinner_dropdown_item, disconnectItems);
         mDisconnectSpinner.setAdapter(disconnectAdapter);
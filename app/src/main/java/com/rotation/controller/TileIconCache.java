@@ -0,0 +1,153 @@
+package com.rotation.controller;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BlendMode;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.util.Log;
+
+/**
+ * Tile icons of every mode, with and without the guard and presets badges, composited once per
+ * density and night mode and then reused, so that a tile update does no bitmap or canvas work.
+ */
+public class TileIconCache {
+
+    public static final String TAG = TileIconCache.class.getSimpleName();
+
+    private static final RotationMode[] MODES = RotationMode.values();
+    private static final float BADGE_SCALE = 0.4f;
+
+    private static final int GUARD_BIT = 1;
+    private static final int PRESETS_BIT = 1 << 1;
+
+    private static volatile TileIconCache current;
+
+    private final Context context;
+    private final int densityDpi;
+    private final int nightMode;
+    private final Icon[] icons = new Icon[MODES.length * 4];
+
+    /* badges and paint are only needed while compositing, released once every icon exists */
+    private Bitmap guardBadge;
+    private Bitmap presetsBadge;
+    private Paint clearPaint;
+    private int remaining = icons.length;
+
+    private TileIconCache(Context context, int densityDpi, int nightMode) {
+        this.context = context;
+        this.densityDpi = densityDpi;
+        this.nightMode = nightMode;
+    }
+
+    public static TileIconCache get(Context context) {
+        Configuration configuration = context.getResources().getConfiguration();
+        int densityDpi = configuration.densityDpi;
+        int nightMode = configuration.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+
+        TileIconCache cache = current;
+        if (cache != null && cache.densityDpi == densityDpi && cache.nightMode == nightMode) {
+            return cache;
+        }
+
+        synchronized (TileIconCache.class) {
+            if (current == null || current.densityDpi != densityDpi || current.nightMode != nightMode) {
+                Log.i(TAG, String.format("new tile icon cache - densityDpi=%d nightMode=%d", densityDpi, nightMode));
+                current = new TileIconCache(context.getApplicationContext(), densityDpi, nightMode);
+            }
+
+            return current;
+        }
+    }
+
+    public Icon getIcon(RotationMode mode, boolean guard, boolean presets) {
+        int index = mode.ordinal() * 4 + (guard ? GUARD_BIT : 0) + (presets ? PRESETS_BIT : 0);
+
+        Icon icon = icons[index];
+        if (icon != null) {
+            return icon;
+        }
+
+        synchronized (this) {
+            if (icons[index] == null) {
+                icons[index] = render(mode, guard, presets);
+
+                if (--remaining == 0) {
+                    guardBadge = null;
+                    presetsBadge = null;
+                    clearPaint = null;
+                }
+            }
+
+            return icons[index];
+        }
+    }
+
+    private Icon render(RotationMode mode, boolean guard, boolean presets) {
+        if (!guard && !presets) {
+            return Icon.createWithResource(context, RotationModeResources.drawableId(mode));
+        }
+
+        Bitmap mainBitmap = getBitmapFromDrawable(context.getDrawable(RotationModeResources.drawableId(mode)));
+        Canvas canvas = new Canvas(mainBitmap);
+
+        if (clearPaint == null) {
+            clearPaint = new Paint();
+            clearPaint.setBlendMode(BlendMode.CLEAR);
+            clearPaint.setStyle(Paint.Style.FILL);
+        }
+
+        if (guard) {
+            if (guardBadge == null) {
+                guardBadge = scaledBitmap(getBitmapFromDrawable(context.getDrawable(R.drawable.guard)), BADGE_SCALE);
+            }
+
+            drawBadge(canvas, guardBadge, mainBitmap.getWidth() - guardBadge.getWidth(), mainBitmap.getHeight() - guardBadge.getHeight());
+        }
+
+        if (presets) {
+            if (presetsBadge == null) {
+                presetsBadge = scaledBitmap(getBitmapFromDrawable(context.getDrawable(R.drawable.icon_smart_toy)), BADGE_SCALE);
+            }
+
+            drawBadge(canvas, presetsBadge, 0, 0);
+        }
+
+        return Icon.createWithBitmap(mainBitmap);
+    }
+
+    private void drawBadge(Canvas canvas, Bitmap badge, int left, int top) {
+        float centerX = left + (badge.getWidth() / 2f);
+        float centerY = top + (badge.getHeight() / 2f);
+        float radius = (badge.getWidth() / 2f) * 1.05f;
+
+        canvas.drawCircle(centerX, centerY, radius, clearPaint);
+        canvas.drawBitmap(badge, left, top, null);
+    }
+
+    private static Bitmap scaledBitmap(Bitmap original, float scale) {
+        int width = (int) (original.getWidth() * scale);
+        int height = (int) (original.getHeight() * scale);
+
+        Bitmap scaled = Bitmap.createScaledBitmap(original, width, height, true);
+        if (scaled != original) {
+            original.recycle();
+        }
+
+        return scaled;
+    }
+
+    private static Bitmap getBitmapFromDrawable(Drawable drawable) {
+        Bitmap bitmap = Bitmap.createBitmap(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
+        drawable.draw(canvas);
+
+        return bitmap;
+    }
+
+}
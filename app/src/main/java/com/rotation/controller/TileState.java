@@ -0,0 +1,132 @@
+package com.rotation.controller;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.service.quicksettings.TileService;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * What the quick settings tile shows, packed in a single int and persisted in its own preferences file,
+ * so that the tile renders without binding to the service or reading the settings.
+ * <p>
+ * The service updates it from every published {@link RotationStateBus.Snapshot}, and asks the (active)
+ * tile to listen again only when the packed value actually changed.
+ */
+public class TileState {
+
+    public static final String TAG = TileState.class.getSimpleName();
+
+    public static final String PREFERENCES_NAME = "tile_state";
+    public static final String STATE_KEY = "state";
+
+    /* nothing persisted yet */
+    public static final int UNKNOWN = -1;
+
+    private static final RotationMode[] MODES = RotationMode.values();
+    private static final TileClickBehavior[] BEHAVIORS = TileClickBehavior.values();
+
+    private static final int MODE_MASK = 0x7;
+    private static final int RUNNING_BIT = 1 << 3;
+    private static final int POWER_ON_BIT = 1 << 4;
+    private static final int GUARD_BIT = 1 << 5;
+    private static final int PRESETS_BIT = 1 << 6;
+    private static final int BEHAVIOR_SHIFT = 7;
+    private static final int STATE_BITS_MASK = (1 << BEHAVIOR_SHIFT) - 1;
+
+    private static volatile Integer current;
+
+    private TileState() {
+    }
+
+    public static int get(Context context) {
+        Integer state = current;
+        if (state == null) {
+            state = getPreferences(context).getInt(STATE_KEY, UNKNOWN);
+            current = state;
+        }
+
+        return state;
+    }
+
+    @VisibleForTesting
+    static synchronized void reset() {
+        current = null;
+    }
+
+    static void update(Context context, RotationStateBus.Snapshot snapshot) {
+        int state = pack(snapshot.isStarted(), snapshot.isPowerOn(), snapshot.getMode(), snapshot.isGuardEnabledOrForced(), snapshot.isUsingPresets(), RotationConfig.get(context).getTileClickBehavior());
+
+        store(context, state);
+    }
+
+    /**
+     * Re-pack the persisted state with a new click behavior, the tile must not show one behavior and
+     * perform another until the service publishes again.
+     */
+    static void updateBehavior(Context context, TileClickBehavior behavior) {
+        int state = get(context);
+        if (state == UNKNOWN) {
+            return;
+        }
+
+        store(context, (state & STATE_BITS_MASK) | behavior.ordinal() << BEHAVIOR_SHIFT);
+    }
+
+    private static void store(Context context, int state) {
+        synchronized (TileState.class) {
+            if (state == get(context)) {
+                return;
+            }
+
+            current = state;
+            getPreferences(context).edit().putInt(STATE_KEY, state).apply();
+        }
+
+        Log.d(TAG, String.format("tile state changed - state=%d", state));
+        TileService.requestListeningState(context, new ComponentName(context, RotationTileService.class));
+    }
+
+    public static int pack(boolean running, boolean powerOn, RotationMode mode, boolean guard, boolean presets, TileClickBehavior behavior) {
+        int state = mode.ordinal();
+        state |= running ? RUNNING_BIT : 0;
+        state |= powerOn ? POWER_ON_BIT : 0;
+        state |= guard ? GUARD_BIT : 0;
+        state |= presets ? PRESETS_BIT : 0;
+        state |= behavior.ordinal() << BEHAVIOR_SHIFT;
+
+        return state;
+    }
+
+    public static boolean isRunning(int state) {
+        return (state & RUNNING_BIT) != 0;
+    }
+
+    public static boolean isPowerOn(int state) {
+        return (state & POWER_ON_BIT) != 0;
+    }
+
+    public static RotationMode getMode(int state) {
+        return MODES[state & MODE_MASK];
+    }
+
+    public static boolean isGuard(int state) {
+        return (state & GUARD_BIT) != 0;
+    }
+
+    public static boolean isPresets(int state) {
+        return (state & PRESETS_BIT) != 0;
+    }
+
+    public static TileClickBehavior getBehavior(int state) {
+        int ordinal = state >>> BEHAVIOR_SHIFT;
+        return ordinal < BEHAVIORS.length ? BEHAVIORS[ordinal] : TileClickBehavior.TOGGLE_SERVICE;
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+}
@@ -3,11 +3,8 @@ package com.rotation.controller;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.util.Log;
 
-import androidx.preference.PreferenceManager;
-
 public class UnlockBroadcastReceiver extends BroadcastReceiver {
 
     private static final String TAG = UnlockBroadcastReceiver.class.getSimpleName();
@@ -19,9 +16,9 @@ public class UnlockBroadcastReceiver extends BroadcastReceiver {
             return;
         }
 
-        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
-        boolean refreshOnUnlock = sharedPreferences.getBoolean(context.getString(R.string.refresh_on_unlock_key), false);
-        boolean startControl = sharedPreferences.getBoolean(context.getString(R.string.service_enabled_key), false);
+        RotationConfig config = RotationConfig.get(context);
+        boolean refreshOnUnlock = config.isRefreshOnUnlock();
+        boolean startControl = config.isServiceEnabled();
 
         if (!startControl) {
             return;
@@ -0,0 +1,107 @@
+package com.rotation.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class ApplicationSearchIndexTest {
+
+    @Test
+    public void manyExactMatchesSkipTheFuzzyTier() {
+        List<ApplicationInfo> applications = notes(ApplicationSearchIndex.FUZZY_SCAN_THRESHOLD, false);
+        applications.add(application("com.example.owl", "Nightowl Tracker", false));
+
+        ApplicationSearchIndex.Result result = new ApplicationSearchIndex(applications).search("not", false, null);
+
+        assertFalse(result.isComplete());
+        assertFalse(contains(result.getMatches(), applications.size() - 1));
+    }
+
+    @Test
+    public void hiddenMatchesDoNotCountTowardsTheThreshold() {
+        List<ApplicationInfo> applications = notes(ApplicationSearchIndex.FUZZY_SCAN_THRESHOLD, true);
+        applications.add(application("com.example.owl", "Nightowl Tracker", false));
+
+        ApplicationSearchIndex.Result result = new ApplicationSearchIndex(applications).search("not", false, null);
+
+        assertTrue(result.isComplete());
+        assertArrayEquals(new int[]{applications.size() - 1}, result.getMatches());
+    }
+
+    @Test
+    public void matchesOutsideTheRestrictionDoNotCountTowardsTheThreshold() {
+        List<ApplicationInfo> applications = notes(ApplicationSearchIndex.FUZZY_SCAN_THRESHOLD, false);
+        applications.add(application("com.example.owl", "Nightowl Tracker", false));
+
+        BitSet restrict = new BitSet();
+        restrict.set(0);
+        restrict.set(applications.size() - 1);
+
+        ApplicationSearchIndex.Result result = new ApplicationSearchIndex(applications).search("not", false, restrict);
+
+        assertTrue(result.isComplete());
+        assertArrayEquals(new int[]{0, applications.size() - 1}, result.getMatches());
+    }
+
+    @Test
+    public void narrowingFromCompleteResultsMatchesFreshSearch() {
+        List<ApplicationInfo> applications = notes(ApplicationSearchIndex.FUZZY_SCAN_THRESHOLD + 5, false);
+        applications.add(application("com.example.owl", "Nightowl Tracker", false));
+        applications.add(application("com.example.nt", "Net Transfer", false));
+        applications.add(application("com.example.ntbk", null, false));
+
+        ApplicationSearchIndex index = new ApplicationSearchIndex(applications);
+        String query = "notes 1";
+
+        ApplicationSearchIndex.Result previous = index.search("", false, null);
+        for (int length = 1; length <= query.length(); length++) {
+            String prefix = query.substring(0, length);
+            ApplicationSearchIndex.Result fresh = index.search(prefix, false, null);
+
+            if (previous.isComplete()) {
+                assertArrayEquals(prefix, fresh.getMatches(), index.search(prefix, false, toBitSet(previous.getMatches())).getMatches());
+            }
+
+            previous = fresh;
+        }
+    }
+
+    private static List<ApplicationInfo> notes(int count, boolean system) {
+        List<ApplicationInfo> applications = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            applications.add(application("com.example.notes" + index, "Notes " + index, system));
+        }
+
+        return applications;
+    }
+
+    private static ApplicationInfo application(String packageName, String displayName, boolean system) {
+        return new ApplicationInfo(packageName, displayName, null, null, system);
+    }
+
+    private static BitSet toBitSet(int[] indexes) {
+        BitSet set = new BitSet();
+        for (int index : indexes) {
+            set.set(index);
+        }
+
+        return set;
+    }
+
+    private static boolean contains(int[] indexes, int value) {
+        for (int index : indexes) {
+            if (index == value) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.rotation.controller;
+
+import android.app.ActivityManager;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowActivityManager;
+
+import java.util.List;
+
+/**
+ * Activity manager stand-in counting the {@code getRunningServices} binder calls.
+ */
+@Implements(ActivityManager.class)
+public class CountingShadowActivityManager extends ShadowActivityManager {
+
+    @Implementation
+    @Override
+    protected List<ActivityManager.RunningServiceInfo> getRunningServices(int maxNum) {
+        SystemCalls.record(SystemCalls.Call.RUNNING_SERVICES_QUERIES);
+        return super.getRunningServices(maxNum);
+    }
+
+}
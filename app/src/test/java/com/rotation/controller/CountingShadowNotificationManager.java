@@ -0,0 +1,24 @@
+package com.rotation.controller;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowNotificationManager;
+
+/**
+ * Notification manager stand-in counting the posted notifications, including the foreground service
+ * notification which the service shadow posts through it.
+ */
+@Implements(NotificationManager.class)
+public class CountingShadowNotificationManager extends ShadowNotificationManager {
+
+    @Implementation
+    @Override
+    public void notify(String tag, int id, Notification notification) {
+        SystemCalls.record(SystemCalls.Call.NOTIFICATIONS_POSTED);
+        super.notify(tag, id, notification);
+    }
+
+}
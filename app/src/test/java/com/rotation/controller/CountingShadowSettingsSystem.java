@@ -0,0 +1,37 @@
+package com.rotation.controller;
+
+import static org.robolectric.util.reflector.Reflector.reflector;
+
+import android.content.ContentResolver;
+import android.provider.Settings;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowSettings;
+import org.robolectric.util.reflector.Direct;
+import org.robolectric.util.reflector.ForType;
+import org.robolectric.util.reflector.Static;
+
+/**
+ * System settings stand-in counting the {@code putInt} calls, the values are still stored by the
+ * default shadow.
+ */
+@Implements(Settings.System.class)
+public class CountingShadowSettingsSystem extends ShadowSettings.ShadowSystem {
+
+    @Implementation
+    public static boolean putInt(ContentResolver resolver, String name, int value) {
+        SystemCalls.record(SystemCalls.Call.SETTINGS_WRITES);
+        return reflector(SystemReflector.class).putInt(resolver, name, value);
+    }
+
+    @ForType(Settings.System.class)
+    interface SystemReflector {
+
+        @Static
+        @Direct
+        boolean putInt(ContentResolver resolver, String name, int value);
+
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.rotation.controller;
+
+import static org.robolectric.util.reflector.Reflector.reflector;
+
+import android.os.Looper;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.util.reflector.Direct;
+import org.robolectric.util.reflector.ForType;
+
+/**
+ * Preferences editor stand-in counting the commits made on the main thread. A commit writes the file
+ * before returning, the application only writes its own files from background threads otherwise.
+ */
+@Implements(className = CountingShadowSharedPreferencesEditor.CLASS_NAME, isInAndroidSdk = false)
+public class CountingShadowSharedPreferencesEditor {
+
+    static final String CLASS_NAME = "android.app.SharedPreferencesImpl$EditorImpl";
+
+    @RealObject
+    private Object realObject;
+
+    @Implementation
+    public boolean commit() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            SystemCalls.record(SystemCalls.Call.MAIN_THREAD_DISK_WRITES);
+        }
+
+        return reflector(EditorReflector.class, realObject).commit();
+    }
+
+    @ForType(className = CLASS_NAME)
+    interface EditorReflector {
+
+        @Direct
+        boolean commit();
+
+    }
+
+}
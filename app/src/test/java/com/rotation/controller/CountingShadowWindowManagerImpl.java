@@ -0,0 +1,58 @@
+package com.rotation.controller;
+
+import static org.robolectric.util.reflector.Reflector.reflector;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.util.reflector.Direct;
+import org.robolectric.util.reflector.ForType;
+
+/**
+ * Window manager stand-in counting the overlay view calls, the views are still added to the window
+ * manager of the simulated device.
+ */
+@Implements(className = CountingShadowWindowManagerImpl.CLASS_NAME, isInAndroidSdk = false)
+public class CountingShadowWindowManagerImpl {
+
+    static final String CLASS_NAME = "android.view.WindowManagerImpl";
+
+    @RealObject
+    private Object realObject;
+
+    @Implementation
+    public void addView(View view, ViewGroup.LayoutParams params) {
+        SystemCalls.record(SystemCalls.Call.OVERLAY_ADDS);
+        reflector(WindowManagerReflector.class, realObject).addView(view, params);
+    }
+
+    @Implementation
+    public void updateViewLayout(View view, ViewGroup.LayoutParams params) {
+        SystemCalls.record(SystemCalls.Call.OVERLAY_UPDATES);
+        reflector(WindowManagerReflector.class, realObject).updateViewLayout(view, params);
+    }
+
+    @Implementation
+    public void removeView(View view) {
+        SystemCalls.record(SystemCalls.Call.OVERLAY_REMOVES);
+        reflector(WindowManagerReflector.class, realObject).removeView(view);
+    }
+
+    @ForType(className = CLASS_NAME)
+    interface WindowManagerReflector {
+
+        @Direct
+        void addView(View view, ViewGroup.LayoutParams params);
+
+        @Direct
+        void updateViewLayout(View view, ViewGroup.LayoutParams params);
+
+        @Direct
+        void removeView(View view);
+
+    }
+
+}
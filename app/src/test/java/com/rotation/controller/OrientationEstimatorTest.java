@@ -0,0 +1,136 @@
+package com.rotation.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays synthetic {@link SensorTrace}s through the estimator, poses are given as the platform
+ * orientation angle (clockwise from upright, right side up at 90 degrees).
+ */
+public class OrientationEstimatorTest {
+
+    private static final long PERIOD_NANOSECOND = 40_000_000L;
+    private static final long MILLISECOND = 1_000_000L;
+
+    @Test
+    public void eachPoseDecidesItsSurfaceRotation() {
+        assertEquals(OrientationEstimator.ROTATION_0, finalRotation(new Motion().hold(0, 1000)));
+        assertEquals(OrientationEstimator.ROTATION_90, finalRotation(new Motion().hold(90, 1000)));
+        assertEquals(OrientationEstimator.ROTATION_180, finalRotation(new Motion().hold(180, 1000)));
+        assertEquals(OrientationEstimator.ROTATION_270, finalRotation(new Motion().hold(270, 1000)));
+    }
+
+    @Test
+    public void rightSideUpIsRotation90() {
+        List<SensorTrace.Sample> samples = new ArrayList<>();
+        for (int index = 0; index < 25; index++) {
+            samples.add(new SensorTrace.Sample(index * PERIOD_NANOSECOND, OrientationEstimator.GRAVITY, 0, 0));
+        }
+
+        assertEquals(OrientationEstimator.ROTATION_90, replay(new SensorTrace(samples), new OrientationEstimator()).getRotation());
+    }
+
+    @Test
+    public void flatDeviceDecidesNothing() {
+        List<SensorTrace.Sample> samples = new ArrayList<>();
+        for (int index = 0; index < 25; index++) {
+            samples.add(new SensorTrace.Sample(index * PERIOD_NANOSECOND, 0, 0, OrientationEstimator.GRAVITY));
+        }
+
+        assertEquals(OrientationEstimator.UNKNOWN, replay(new SensorTrace(samples), new OrientationEstimator()).getRotation());
+    }
+
+    @Test
+    public void briefTiltIsIgnored() {
+        Motion motion = new Motion().hold(0, 1000).hold(90, 100).hold(0, 1000);
+
+        List<SensorTrace.Decision> decisions = motion.trace().replay(new OrientationEstimator());
+
+        assertEquals(1, decisions.size());
+        assertEquals(OrientationEstimator.ROTATION_0, decisions.get(0).getRotation());
+    }
+
+    @Test
+    public void newRotationWaitsForSettle() {
+        Motion motion = new Motion().hold(0, 1000);
+        long turn = motion.now();
+        motion.hold(90, 2000);
+
+        List<SensorTrace.Decision> decisions = motion.trace().replay(new OrientationEstimator());
+
+        assertEquals(2, decisions.size());
+        SensorTrace.Decision landscape = decisions.get(1);
+        assertEquals(OrientationEstimator.ROTATION_90, landscape.getRotation());
+        assertTrue(landscape.getTimestampNanos() - turn >= OrientationEstimator.SETTLE_NANOSECOND);
+    }
+
+    @Test
+    public void hysteresisKeepsRotationNearBoundary() {
+        /* past the 45 degrees boundary, but not by the hysteresis margin */
+        float nearBoundary = 45 + OrientationEstimator.HYSTERESIS_DEGREES - 5;
+        assertEquals(OrientationEstimator.ROTATION_0, finalRotation(new Motion().hold(0, 1000).hold(nearBoundary, 3000)));
+
+        float pastMargin = 45 + OrientationEstimator.HYSTERESIS_DEGREES + 5;
+        assertEquals(OrientationEstimator.ROTATION_90, finalRotation(new Motion().hold(0, 1000).hold(pastMargin, 3000)));
+    }
+
+    @Test
+    public void firstDecisionIgnoresHysteresis() {
+        float nearBoundary = 45 + OrientationEstimator.HYSTERESIS_DEGREES - 5;
+        assertEquals(OrientationEstimator.ROTATION_90, finalRotation(new Motion().hold(nearBoundary, 1000)));
+    }
+
+    @Test
+    public void disallowedRotationsAreNotProposed() {
+        OrientationEstimator estimator = new OrientationEstimator();
+        estimator.setAllowedRotations(OrientationEstimator.PORTRAIT_ROTATIONS);
+
+        replay(new Motion().hold(0, 1000).hold(90, 2000).trace(), estimator);
+
+        assertEquals(OrientationEstimator.ROTATION_0, estimator.getRotation());
+    }
+
+    private static int finalRotation(Motion motion) {
+        return replay(motion.trace(), new OrientationEstimator()).getRotation();
+    }
+
+    private static OrientationEstimator replay(SensorTrace trace, OrientationEstimator estimator) {
+        trace.replay(estimator);
+        return estimator;
+    }
+
+    private static class Motion {
+
+        private final List<SensorTrace.Sample> samples = new ArrayList<>();
+        private long timestamp = 0;
+
+        Motion hold(float angleDegrees, long durationMillis) {
+            double radians = Math.toRadians(angleDegrees);
+            float x = (float) (OrientationEstimator.GRAVITY * Math.sin(radians));
+            float y = (float) (OrientationEstimator.GRAVITY * Math.cos(radians));
+
+            long end = timestamp + durationMillis * MILLISECOND;
+            while (timestamp < end) {
+                samples.add(new SensorTrace.Sample(timestamp, x, y, 0));
+                timestamp += PERIOD_NANOSECOND;
+            }
+
+            return this;
+        }
+
+        long now() {
+            return timestamp;
+        }
+
+        SensorTrace trace() {
+            return new SensorTrace(samples);
+        }
+
+    }
+
+}
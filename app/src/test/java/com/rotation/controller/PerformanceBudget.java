@@ -0,0 +1,53 @@
+package com.rotation.controller;
+
+import static org.junit.Assert.fail;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Upper bounds on the system calls a scenario may cause, everything not allowed explicitly is zero.
+ */
+public class PerformanceBudget {
+
+    private final Map<SystemCalls.Call, Long> calls = new EnumMap<>(SystemCalls.Call.class);
+
+    public static PerformanceBudget none() {
+        PerformanceBudget budget = new PerformanceBudget();
+        for (SystemCalls.Call call : SystemCalls.Call.values()) {
+            budget.calls.put(call, 0L);
+        }
+
+        return budget;
+    }
+
+    public PerformanceBudget allow(SystemCalls.Call call, long maximum) {
+        calls.put(call, maximum);
+        return this;
+    }
+
+    /**
+     * Leave a call unchecked.
+     */
+    public PerformanceBudget ignore(SystemCalls.Call call) {
+        calls.remove(call);
+        return this;
+    }
+
+    public void check(String scenario) {
+        StringBuilder violations = new StringBuilder();
+
+        for (Map.Entry<SystemCalls.Call, Long> entry : calls.entrySet()) {
+            long actual = SystemCalls.get(entry.getKey());
+            if (actual > entry.getValue()) {
+                violations.append(String.format(Locale.ROOT, "  %s=%d (budget %d)\n", entry.getKey().getLabel(), actual, entry.getValue()));
+            }
+        }
+
+        if (violations.length() > 0) {
+            fail(String.format("%s over budget:\n%s\n%s", scenario, violations, RotationMetrics.describe()));
+        }
+    }
+
+}
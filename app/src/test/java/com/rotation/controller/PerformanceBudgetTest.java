@@ -0,0 +1,217 @@
+package com.rotation.controller;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+
+/**
+ * Scripted scenarios on a simulated device, each bounded by the system calls it is allowed to cause,
+ * so that a change cannot silently add binder calls or disk writes to the hot paths.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, shadows = {
+        CountingShadowActivityManager.class,
+        CountingShadowSettingsSystem.class,
+        CountingShadowWindowManagerImpl.class,
+        CountingShadowNotificationManager.class,
+        CountingShadowSharedPreferencesEditor.class
+})
+public class PerformanceBudgetTest {
+
+    private static final String GAME_PACKAGE = "com.example.game";
+    private static final String GAME_ACTIVITY = GAME_PACKAGE + ".MainActivity";
+    private static final String GAME_SETTINGS_ACTIVITY = GAME_PACKAGE + ".SettingsActivity";
+    private static final String BROWSER_PACKAGE = "com.example.browser";
+    private static final String LAUNCHER_PACKAGE = "com.example.launcher";
+
+    private SimulatedDevice device;
+
+    @Before
+    public void setUp() {
+        ServiceRegistry.reset();
+        RotationStateBus.reset();
+        RotationConfig.reset();
+        PresetIndex.reset();
+        TileState.reset();
+
+        device = new SimulatedDevice();
+
+        RotationSharedPreferences.from(device.getApplication()).setApplicationMode(GAME_PACKAGE, RotationMode.LANDSCAPE);
+    }
+
+    @After
+    public void tearDown() {
+        device.destroy();
+    }
+
+    @Test
+    public void serviceStart() {
+        beginScenario();
+        device.startService();
+
+        check("service start", PerformanceBudget.none()
+                .allow(SystemCalls.Call.SERVICE_INTENTS, 1)
+                .allow(SystemCalls.Call.SETTINGS_WRITES, 1)
+                .allow(SystemCalls.Call.OVERLAY_ADDS, 1)
+                .allow(SystemCalls.Call.NOTIFICATIONS_POSTED, 1));
+    }
+
+    @Test
+    public void appSwitch() {
+        device.startService();
+
+        beginScenario();
+        device.switchTo(GAME_PACKAGE, GAME_ACTIVITY);
+        device.settle();
+
+        assertEquals(RotationMode.LANDSCAPE, RotationStateBus.getSnapshot().getMode());
+        check("app switch", PerformanceBudget.none()
+                .allow(SystemCalls.Call.SERVICE_INTENTS, 1)
+                .allow(SystemCalls.Call.SETTINGS_WRITES, 1)
+                .allow(SystemCalls.Call.OVERLAY_UPDATES, 1)
+                .allow(SystemCalls.Call.NOTIFICATIONS_POSTED, 1));
+    }
+
+    @Test
+    public void appSwitchBack() {
+        device.startService();
+        device.switchTo(GAME_PACKAGE, GAME_ACTIVITY);
+        device.settle();
+
+        beginScenario();
+        device.switchTo(BROWSER_PACKAGE, BROWSER_PACKAGE + ".MainActivity");
+        device.settle();
+
+        assertEquals(RotationMode.AUTO, RotationStateBus.getSnapshot().getMode());
+        check("app switch back", PerformanceBudget.none()
+                .allow(SystemCalls.Call.SERVICE_INTENTS, 1)
+                .allow(SystemCalls.Call.SETTINGS_WRITES, 1)
+                .allow(SystemCalls.Call.OVERLAY_UPDATES, 1)
+                .allow(SystemCalls.Call.NOTIFICATIONS_POSTED, 1));
+    }
+
+    @Test
+    public void activitySwitchWithinApplication() {
+        device.startService();
+        device.switchTo(GAME_PACKAGE, GAME_ACTIVITY);
+        device.settle();
+
+        beginScenario();
+        device.switchTo(GAME_PACKAGE, GAME_SETTINGS_ACTIVITY);
+        device.settle();
+
+        check("activity switch within application", PerformanceBudget.none());
+    }
+
+    @Test
+    public void presetReappliedAfterManualChange() {
+        device.startService();
+        device.switchTo(GAME_PACKAGE, GAME_ACTIVITY);
+        device.settle();
+        device.send(RotationService.newChangeModeIntent(device.getApplication(), RotationMode.PORTRAIT));
+        device.settle();
+
+        beginScenario();
+        device.switchTo(GAME_PACKAGE, GAME_SETTINGS_ACTIVITY);
+        device.settle();
+
+        assertEquals(RotationMode.LANDSCAPE, RotationStateBus.getSnapshot().getMode());
+        check("preset reapplied after manual change", PerformanceBudget.none()
+                .allow(SystemCalls.Call.SERVICE_INTENTS, 1)
+                .allow(SystemCalls.Call.SETTINGS_WRITES, 1)
+                .allow(SystemCalls.Call.OVERLAY_UPDATES, 1)
+                .allow(SystemCalls.Call.NOTIFICATIONS_POSTED, 1));
+    }
+
+    @Test
+    public void dialogWithinApplication() {
+        /* differs from the application preset, a dialog taken for an activity would fall back to it */
+        RotationSharedPreferences.from(device.getApplication()).setActivityMode(GAME_PACKAGE, GAME_ACTIVITY, RotationMode.PORTRAIT);
+
+        device.startService();
+        device.switchTo(GAME_PACKAGE, GAME_ACTIVITY);
+        device.settle();
+
+        beginScenario();
+        device.popUp(GAME_PACKAGE, "android.app.AlertDialog");
+        device.settle();
+
+        assertEquals(RotationMode.PORTRAIT, RotationStateBus.getSnapshot().getMode());
+
+        device.switchTo(GAME_PACKAGE, GAME_ACTIVITY);
+        device.settle();
+
+        check("dialog within application", PerformanceBudget.none());
+    }
+
+    @Test
+    public void transientWindowsBeforeAppSwitch() {
+        device.startService();
+
+        beginScenario();
+        device.switchTo(LAUNCHER_PACKAGE, LAUNCHER_PACKAGE + ".Launcher");
+        device.advance(Duration.ofMillis(RotationAccessibilityService.SETTLE_DELAY_MILLISECOND / 3));
+        device.switchTo(BROWSER_PACKAGE, BROWSER_PACKAGE + ".MainActivity");
+        device.advance(Duration.ofMillis(RotationAccessibilityService.SETTLE_DELAY_MILLISECOND / 3));
+        device.switchTo(GAME_PACKAGE, GAME_ACTIVITY);
+        device.settle();
+
+        assertEquals(RotationMode.LANDSCAPE, RotationStateBus.getSnapshot().getMode());
+        check("transient windows before app switch", PerformanceBudget.none()
+                .allow(SystemCalls.Call.SERVICE_INTENTS, 1)
+                .allow(SystemCalls.Call.SETTINGS_WRITES, 1)
+                .allow(SystemCalls.Call.OVERLAY_UPDATES, 1)
+                .allow(SystemCalls.Call.NOTIFICATIONS_POSTED, 1));
+    }
+
+    @Test
+    public void modeChangeBurst() {
+        device.startService();
+
+        beginScenario();
+        device.send(RotationService.newChangeModeIntent(device.getApplication(), RotationMode.PORTRAIT));
+        device.send(RotationService.newChangeModeIntent(device.getApplication(), RotationMode.LANDSCAPE));
+        device.send(RotationService.newChangeModeIntent(device.getApplication(), RotationMode.PORTRAIT_REVERSE));
+        device.settle();
+
+        assertEquals(RotationMode.PORTRAIT_REVERSE, RotationStateBus.getSnapshot().getMode());
+        check("mode change burst", PerformanceBudget.none()
+                .allow(SystemCalls.Call.SERVICE_INTENTS, 3)
+                .allow(SystemCalls.Call.SETTINGS_WRITES, 1)
+                .allow(SystemCalls.Call.OVERLAY_UPDATES, 1)
+                .allow(SystemCalls.Call.NOTIFICATIONS_POSTED, 1));
+    }
+
+    @Test
+    public void tileRendering() {
+        device.startService();
+        RotationTileService tileService = Robolectric.setupService(RotationTileService.class);
+
+        beginScenario();
+        for (int index = 0; index < 5; index++) {
+            tileService.onStartListening();
+            tileService.onStopListening();
+        }
+        device.settle();
+
+        check("tile rendering", PerformanceBudget.none());
+    }
+
+    private void beginScenario() {
+        RotationMetrics.reset();
+        SystemCalls.reset();
+    }
+
+    private void check(String scenario, PerformanceBudget budget) {
+        budget.check(scenario);
+    }
+
+}
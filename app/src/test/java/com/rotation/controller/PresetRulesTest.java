@@ -0,0 +1,61 @@
+package com.rotation.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PresetRulesTest {
+
+    private static final int NO_MODE = -1;
+
+    @Test
+    public void starMatchesAnySequence() {
+        PresetRules rules = PresetRules.compile("com.*.games=PORTRAIT\ncom.a*b=LANDSCAPE");
+
+        assertEquals(RotationMode.PORTRAIT.ordinal(), rules.matchPattern("com.x.y.games"));
+        assertEquals(RotationMode.LANDSCAPE.ordinal(), rules.matchPattern("com.ab"));
+        assertEquals(RotationMode.LANDSCAPE.ordinal(), rules.matchPattern("com.axxb"));
+        assertEquals(NO_MODE, rules.matchPattern("com.games"));
+        assertEquals(NO_MODE, rules.matchPattern("com.abc"));
+    }
+
+    @Test
+    public void mostLiteralPatternWins() {
+        PresetRules rules = PresetRules.compile("*=AUTO\ncom.example.*=PORTRAIT\ncom.example.?layer=LANDSCAPE");
+
+        assertEquals(RotationMode.LANDSCAPE.ordinal(), rules.matchPattern("com.example.player"));
+        assertEquals(RotationMode.PORTRAIT.ordinal(), rules.matchPattern("com.example.notes"));
+        assertEquals(RotationMode.AUTO.ordinal(), rules.matchPattern("org.other"));
+    }
+
+    @Test
+    public void consecutiveStarsAreCollapsed() {
+        assertEquals("a*b*c=PORTRAIT", PresetRules.collapseStars("a**b***c=PORTRAIT"));
+
+        PresetRules rules = PresetRules.compile("a**b***c=PORTRAIT");
+        assertEquals(RotationMode.PORTRAIT.ordinal(), rules.matchPattern("abc"));
+        assertEquals(RotationMode.PORTRAIT.ordinal(), rules.matchPattern("a.b.c"));
+    }
+
+    @Test
+    public void manyStarsDoNotBacktrack() {
+        StringBuilder pattern = new StringBuilder();
+        for (int index = 0; index < 20; index++) {
+            pattern.append("*a");
+        }
+        pattern.append("*b=PORTRAIT");
+
+        StringBuilder name = new StringBuilder();
+        for (int index = 0; index < 200; index++) {
+            name.append('a');
+        }
+
+        PresetRules rules = PresetRules.compile(pattern.toString());
+
+        long start = System.nanoTime();
+        assertEquals(NO_MODE, rules.matchPattern(name.toString()));
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+    }
+
+}
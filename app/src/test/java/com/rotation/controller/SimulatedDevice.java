@@ -0,0 +1,145 @@
+package com.rotation.controller;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.view.accessibility.AccessibilityEvent;
+
+import androidx.annotation.Nullable;
+
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.shadows.ShadowApplication;
+
+import java.time.Duration;
+
+/**
+ * Drives the controller services on Robolectric like the system would: intents started by any
+ * component are delivered to {@link RotationService}, and the main looper is advanced until the
+ * pipeline is idle.
+ */
+public class SimulatedDevice {
+
+    /* covers the window settle delay, command flush and notification throttle */
+    public static final Duration SETTLE_STEP = Duration.ofSeconds(1);
+    public static final int MAX_SETTLE_ROUNDS = 10;
+
+    private final Application application;
+    private final ShadowApplication shadowApplication;
+
+    private @Nullable ServiceController<RotationService> serviceController;
+    private @Nullable RotationAccessibilityService accessibilityService;
+    private int startId = 0;
+
+    public SimulatedDevice() {
+        application = RuntimeEnvironment.getApplication();
+        shadowApplication = shadowOf(application);
+
+        Settings.System.putInt(application.getContentResolver(), Settings.System.ACCELEROMETER_ROTATION, 1);
+        Settings.System.putInt(application.getContentResolver(), Settings.System.USER_ROTATION, 0);
+    }
+
+    public Application getApplication() {
+        return application;
+    }
+
+    public void startService() {
+        RotationService.start(application);
+        settle();
+    }
+
+    public void send(Intent intent) {
+        application.startService(intent);
+    }
+
+    /**
+     * Bring an application window to the front, as reported to the accessibility service.
+     */
+    public void switchTo(String packageName, String className) {
+        shadowOf(application.getPackageManager()).addActivityIfNotPresent(new ComponentName(packageName, className));
+        reportWindow(packageName, className);
+    }
+
+    /**
+     * Show a dialog or popup window of an application, its class is not an activity of the package.
+     */
+    public void popUp(String packageName, String className) {
+        reportWindow(packageName, className);
+    }
+
+    private void reportWindow(String packageName, String className) {
+        if (accessibilityService == null) {
+            accessibilityService = Robolectric.setupService(RotationAccessibilityService.class);
+        }
+
+        AccessibilityEvent event = AccessibilityEvent.obtain(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
+        event.setPackageName(packageName);
+        event.setClassName(className);
+        event.setEventTime(SystemClock.uptimeMillis());
+        event.getText().add(className);
+
+        accessibilityService.onAccessibilityEvent(event);
+    }
+
+    public void advance(Duration duration) {
+        shadowOf(Looper.getMainLooper()).idleFor(duration);
+        deliverStartedServices();
+    }
+
+    /**
+     * Run until no intent is in flight and no more work is due.
+     */
+    public void settle() {
+        for (int round = 0; round < MAX_SETTLE_ROUNDS; round++) {
+            boolean delivered = deliverStartedServices();
+            shadowOf(Looper.getMainLooper()).idleFor(SETTLE_STEP);
+
+            if (!delivered && shadowApplication.peekNextStartedService() == null) {
+                return;
+            }
+        }
+
+        throw new IllegalStateException("device did not settle");
+    }
+
+    private boolean deliverStartedServices() {
+        boolean delivered = false;
+
+        Intent intent;
+        while ((intent = shadowApplication.getNextStartedService()) != null) {
+            ComponentName component = intent.getComponent();
+            if (component == null || !RotationService.class.getName().equals(component.getClassName())) {
+                continue;
+            }
+
+            if (serviceController == null) {
+                serviceController = Robolectric.buildService(RotationService.class).create();
+            }
+
+            SystemCalls.record(SystemCalls.Call.SERVICE_INTENTS);
+            serviceController.withIntent(intent).startCommand(0, ++startId);
+            delivered = true;
+        }
+
+        return delivered;
+    }
+
+    public void destroy() {
+        if (serviceController != null) {
+            serviceController.destroy();
+            serviceController = null;
+        }
+
+        if (accessibilityService != null) {
+            accessibilityService.onDestroy();
+            accessibilityService = null;
+        }
+    }
+
+}
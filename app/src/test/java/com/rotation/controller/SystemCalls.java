@@ -0,0 +1,46 @@
+package com.rotation.controller;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Calls that crossed into the (shadowed) system, counted where they leave the application rather than
+ * by the application itself, so that a budget also catches calls the production counters miss.
+ */
+public class SystemCalls {
+
+    public enum Call {
+        SETTINGS_WRITES,
+        OVERLAY_ADDS,
+        OVERLAY_UPDATES,
+        OVERLAY_REMOVES,
+        NOTIFICATIONS_POSTED,
+        SERVICE_INTENTS,
+        RUNNING_SERVICES_QUERIES,
+        MAIN_THREAD_DISK_WRITES;
+
+        public String getLabel() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final AtomicLongArray counts = new AtomicLongArray(Call.values().length);
+
+    private SystemCalls() {
+    }
+
+    public static void record(Call call) {
+        counts.incrementAndGet(call.ordinal());
+    }
+
+    public static long get(Call call) {
+        return counts.get(call.ordinal());
+    }
+
+    public static void reset() {
+        for (int index = 0; index < counts.length(); index++) {
+            counts.set(index, 0);
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// The per-event logic of the app compiled from its sources. None of it may use R: keys and view ids are
+// passed in, and src/main/java only declares the few platform constants and interfaces it refers to
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java", "src/main/java"))
+            listOf(
+                "OrientationEstimator", "SensorTrace", "RotationMode", "TileClickBehavior", "PresetIndex",
+                "PresetRules", "ApplicationSearchIndex", "ApplicationInfo", "IgnoredPackages"
+            ).forEach { include("com/rotation/controller/$it.java") }
+            include("android/**")
+        }
+    }
+}
+
+dependencies {
+    compileOnly(libs.androidx.annotation)
+    compileOnly(libs.lombok)
+    annotationProcessor(libs.lombok)
+}
+
+// ./gradlew :benchmark:jmh, results in benchmark/build/results/jmh
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,71 @@
+package com.rotation.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work of one {@code ApplicationFilter} pass over the presets list, without the list diff: the
+ * index rebuilt when the list changes, then a search per keystroke, from scratch or narrowed to the
+ * previous (complete) result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ApplicationSearchBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int applicationCount;
+
+    /* prefix, word start, acronym and a typo that only the fuzzy tier finds */
+    @Param({"cam", "player", "mp", "calnedar"})
+    public String query;
+
+    private List<ApplicationInfo> applications;
+    private ApplicationSearchIndex index;
+    private String normalized;
+    private BitSet previous;
+
+    @Setup
+    public void setUp() {
+        applications = SyntheticApplications.generate(applicationCount);
+        index = new ApplicationSearchIndex(applications);
+        normalized = ApplicationSearchIndex.normalize(query);
+
+        /* the result for the query less its last character, as the filter would have delivered it */
+        previous = new BitSet(index.size());
+        for (int match : index.search(normalized.substring(0, normalized.length() - 1), false, null).getMatches()) {
+            previous.set(match);
+        }
+    }
+
+    @Benchmark
+    public ApplicationSearchIndex buildIndex() {
+        return new ApplicationSearchIndex(applications);
+    }
+
+    @Benchmark
+    public ApplicationSearchIndex.Result search() {
+        return index.search(normalized, false, null);
+    }
+
+    @Benchmark
+    public ApplicationSearchIndex.Result searchWithSystem() {
+        return index.search(normalized, true, null);
+    }
+
+    @Benchmark
+    public ApplicationSearchIndex.Result searchNarrowed() {
+        return index.search(normalized, false, previous);
+    }
+
+}
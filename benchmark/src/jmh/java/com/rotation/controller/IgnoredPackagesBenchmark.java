@@ -0,0 +1,41 @@
+package com.rotation.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ignored prefix check, run for every window state change and every listed application.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IgnoredPackagesBenchmark {
+
+    private static final String[] PACKAGES = {
+            "com.android.systemui",
+            "com.android.systemui.plugin",
+            "com.google.android.apps.nexuslauncher",
+            "com.example.games.racing",
+            "org.mozilla.firefox",
+            "com.android.settings",
+            "net.openvpn.openvpn",
+            "com.samsung.android.app.notes"
+    };
+
+    private int next;
+
+    @Benchmark
+    public boolean isIgnored() {
+        int current = next;
+        next = (current + 1) & (PACKAGES.length - 1);
+
+        return IgnoredPackages.isIgnored(PACKAGES[current]);
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.rotation.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single accelerometer sample, the work done for every sensor event while the in-app
+ * orientation engine runs. Should not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrientationEstimatorBenchmark {
+
+    /* power of two, cycled through */
+    private static final int SAMPLE_COUNT = 4096;
+
+    @Param({"all", "portrait", "landscape"})
+    public String allowed;
+
+    private final float[] x = new float[SAMPLE_COUNT];
+    private final float[] y = new float[SAMPLE_COUNT];
+    private final float[] z = new float[SAMPLE_COUNT];
+
+    private OrientationEstimator estimator;
+    private int next;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        List<SensorTrace.Sample> samples = SyntheticMotion.generate(SAMPLE_COUNT);
+        for (int index = 0; index < SAMPLE_COUNT; index++) {
+            SensorTrace.Sample sample = samples.get(index);
+            x[index] = sample.getX();
+            y[index] = sample.getY();
+            z[index] = sample.getZ();
+        }
+
+        estimator = new OrientationEstimator();
+        switch (allowed) {
+            case "portrait":
+                estimator.setAllowedRotations(OrientationEstimator.PORTRAIT_ROTATIONS);
+                break;
+
+            case "landscape":
+                estimator.setAllowedRotations(OrientationEstimator.LANDSCAPE_ROTATIONS);
+                break;
+
+            default:
+                estimator.setAllowedRotations(OrientationEstimator.ALL_ROTATIONS);
+                break;
+        }
+
+        next = 0;
+        timestamp = 0;
+    }
+
+    @Benchmark
+    public int onSample() {
+        int index = next;
+        next = (index + 1) & (SAMPLE_COUNT - 1);
+
+        /* keeps increasing across cycles, like sensor timestamps */
+        timestamp += SyntheticMotion.PERIOD_NANOSECOND;
+
+        return estimator.onSample(timestamp, x[index], y[index], z[index]);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.rotation.controller;
+
+import android.content.SharedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving the preset of the window in front, as the accessibility service does once the window
+ * settled: the per-app index first, then the pattern rules. The per-event preferences read the index
+ * replaced is measured alongside, over a plain map instead of the platform implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PresetLookupBenchmark {
+
+    /* power of two, cycled through */
+    private static final int PACKAGE_COUNT = 1024;
+
+    /* a quarter of the packages match no pattern, and are asked their category once */
+    private static final String[] PACKAGE_PREFIXES = {
+            "com.example.app", "com.example.games.racing", "org.mozilla.reader", "com.vendor.camera"
+    };
+
+    private static final String RULES = String.join("\n",
+            "com.example.games.*=LANDSCAPE_SENSOR",
+            "com.example.?layer=PORTRAIT",
+            "org.*.reader*=PORTRAIT",
+            "*.video.*=LANDSCAPE",
+            "*camera*=PORTRAIT",
+            "category:game=LANDSCAPE_SENSOR");
+
+    private static final PresetRules.Categories NO_CATEGORY = packageName -> android.content.pm.ApplicationInfo.CATEGORY_UNDEFINED;
+
+    @Param({"10", "100", "1000"})
+    public int presetCount;
+
+    private final String[] packages = new String[PACKAGE_COUNT];
+    private final String[] classes = new String[PACKAGE_COUNT];
+
+    private SharedPreferences preferences;
+    private PresetIndex index;
+    private PresetRules rules;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int index = 0; index < PACKAGE_COUNT; index++) {
+            packages[index] = PACKAGE_PREFIXES[index % PACKAGE_PREFIXES.length] + index;
+            classes[index] = packages[index] + ".MainActivity";
+        }
+
+        /* every other package in the cycle has a preset, a few of them per activity */
+        Map<String, Object> presets = new HashMap<>();
+        for (int preset = 0; preset < presetCount; preset++) {
+            int index = (preset * 2) % PACKAGE_COUNT;
+            if (preset % 8 == 0) {
+                presets.put(PresetIndex.getActivityKey(packages[index], classes[index]), RotationMode.LANDSCAPE.name());
+            } else {
+                presets.put(PresetIndex.getApplicationKey(packages[index]), RotationMode.PORTRAIT.name());
+            }
+        }
+
+        preferences = new MapSharedPreferences(presets);
+        PresetIndex.reset();
+        index = PresetIndex.get(preferences);
+        rules = PresetRules.compile(RULES);
+        next = 0;
+    }
+
+    @Benchmark
+    public RotationMode preferencesLookup() {
+        String value = preferences.getString(PresetIndex.getApplicationKey(packages[nextPackage()]), null);
+        return RotationMode.valueOf(value, null);
+    }
+
+    @Benchmark
+    public RotationMode indexLookup() {
+        int current = nextPackage();
+        return index.lookup(packages[current], classes[current]);
+    }
+
+    /**
+     * Memoized per package after the first walk, like between rule changes.
+     */
+    @Benchmark
+    public RotationMode rulesLookup() {
+        return rules.lookup(packages[nextPackage()], NO_CATEGORY);
+    }
+
+    @Benchmark
+    public int rulesMatch() {
+        return rules.matchPattern(packages[nextPackage()]);
+    }
+
+    private int nextPackage() {
+        int current = next;
+        next = (current + 1) & (PACKAGE_COUNT - 1);
+        return current;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.rotation.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mode lookups of the notification buttons, the orientation listener and the stored values,
+ * each cycling through every mode (and a value that matches none).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RotationModeBenchmark {
+
+    /* by mode ordinal, passed in like RotationModeResources does, the scan does not depend on the values */
+    private static final int[] MODE_VIEW_IDS = {
+            0x7f0a0101, 0x7f0a0102, 0x7f0a0103, 0x7f0a0104, 0x7f0a0105, 0x7f0a0106, 0x7f0a0107
+    };
+
+    /* every mode button, then a view that is none of them */
+    private static final int[] VIEW_IDS = {
+            0x7f0a0101, 0x7f0a0102, 0x7f0a0103, 0x7f0a0104, 0x7f0a0105, 0x7f0a0106, 0x7f0a0107, 0x7f0a0001
+    };
+
+    private static final int[] ROTATION_VALUES = {0, 1, 2, 3};
+
+    /* the last two are a stale value from an older version and no value at all */
+    private static final String[] NAMES = {
+            "AUTO", "PORTRAIT", "PORTRAIT_REVERSE", "PORTRAIT_SENSOR", "LANDSCAPE", "LANDSCAPE_SENSOR", "UNKNOWN", null
+    };
+
+    private int nextViewId;
+    private int nextRotationValue;
+    private int nextName;
+
+    @Benchmark
+    public RotationMode fromViewId() {
+        int current = nextViewId;
+        nextViewId = (current + 1) & (VIEW_IDS.length - 1);
+
+        return RotationMode.fromViewId(MODE_VIEW_IDS, VIEW_IDS[current]);
+    }
+
+    @Benchmark
+    public RotationMode fromRotationValue() {
+        int current = nextRotationValue;
+        nextRotationValue = (current + 1) & (ROTATION_VALUES.length - 1);
+
+        return RotationMode.fromRotationValue(ROTATION_VALUES[current]);
+    }
+
+    @Benchmark
+    public RotationMode valueOf() {
+        int current = nextName;
+        nextName = (current + 1) & (NAMES.length - 1);
+
+        return RotationMode.valueOf(NAMES[current], RotationMode.AUTO);
+    }
+
+}
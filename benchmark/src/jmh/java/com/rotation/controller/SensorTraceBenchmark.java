@@ -0,0 +1,51 @@
+package com.rotation.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaying and parsing recorded traces, from a few seconds to a few minutes of samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SensorTraceBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int sampleCount;
+
+    private SensorTrace trace;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        trace = new SensorTrace(SyntheticMotion.generate(sampleCount));
+
+        StringWriter writer = new StringWriter();
+        trace.write(writer);
+        text = writer.toString();
+    }
+
+    @Benchmark
+    public List<SensorTrace.Decision> replay() {
+        return trace.replay(new OrientationEstimator());
+    }
+
+    @Benchmark
+    public SensorTrace read() throws IOException {
+        return SensorTrace.read(new StringReader(text));
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.rotation.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic installed application lists: one or two word labels (a few without any) under
+ * vendor package names, about a third of them system applications.
+ */
+public class SyntheticApplications {
+
+    private static final String[] VENDORS = {
+            "com.google.android", "com.samsung.android", "com.example", "org.mozilla", "com.microsoft", "net.openvpn", "com.android"
+    };
+
+    private static final String[] WORDS = {
+            "Notes", "Camera", "Gallery", "Maps", "Music", "Player", "Video", "Calendar", "Clock", "Weather",
+            "Files", "Browser", "Mail", "Messages", "Phone", "Contacts", "Settings", "Store", "Wallet", "Fitness",
+            "Translate", "Keyboard", "Launcher", "Reader", "Scanner", "Recorder", "Podcast", "Radio", "Chess", "Racing"
+    };
+
+    private SyntheticApplications() {
+    }
+
+    public static List<ApplicationInfo> generate(int count) {
+        Random random = new Random(42);
+        List<ApplicationInfo> applications = new ArrayList<>(count);
+
+        for (int index = 0; index < count; index++) {
+            String first = WORDS[random.nextInt(WORDS.length)];
+            String second = WORDS[random.nextInt(WORDS.length)];
+
+            String packageName = VENDORS[random.nextInt(VENDORS.length)] + "." + first.toLowerCase() + second.toLowerCase() + index;
+            String displayName = random.nextInt(20) == 0 ? null : random.nextBoolean() ? first : first + " " + second;
+
+            applications.add(new ApplicationInfo(packageName, displayName, null, null, random.nextInt(3) == 0));
+        }
+
+        Collections.sort(applications);
+        return applications;
+    }
+
+}
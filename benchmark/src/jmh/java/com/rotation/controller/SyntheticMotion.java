@@ -0,0 +1,47 @@
+package com.rotation.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic accelerometer samples of a hand-held device: held in each orientation (and laid flat)
+ * for a couple of seconds in turn, with sensor noise.
+ */
+public class SyntheticMotion {
+
+    /* the sampling period of OrientationEngine */
+    public static final long PERIOD_NANOSECOND = 40_000_000L;
+    public static final int SAMPLES_PER_POSE = 50;
+    public static final float NOISE = 0.3f;
+
+    /* x, y, z of gravity in each pose: portrait, landscape, flat, reverse portrait, reverse landscape */
+    private static final float[][] POSES = {
+            {0, OrientationEstimator.GRAVITY, 0},
+            {OrientationEstimator.GRAVITY, 0, 0},
+            {0, 0, OrientationEstimator.GRAVITY},
+            {0, -OrientationEstimator.GRAVITY, 0},
+            {-OrientationEstimator.GRAVITY, 0, 0}
+    };
+
+    private SyntheticMotion() {
+    }
+
+    public static List<SensorTrace.Sample> generate(int count) {
+        Random random = new Random(42);
+        List<SensorTrace.Sample> samples = new ArrayList<>(count);
+
+        for (int index = 0; index < count; index++) {
+            float[] pose = POSES[(index / SAMPLES_PER_POSE) % POSES.length];
+
+            samples.add(new SensorTrace.Sample(
+                    index * PERIOD_NANOSECOND,
+                    pose[0] + (float) random.nextGaussian() * NOISE,
+                    pose[1] + (float) random.nextGaussian() * NOISE,
+                    pose[2] + (float) random.nextGaussian() * NOISE));
+        }
+
+        return samples;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.rotation.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the stored click behavior, done once per configuration rebuild; a tile click only reads the
+ * parsed value from the configuration snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TileClickBehaviorBenchmark {
+
+    /* the last one is a value from an older version */
+    private static final String[] NAMES = {"TOGGLE_SERVICE", "TOGGLE_POWER", "SHOW_MODES", "UNKNOWN"};
+
+    private int next;
+
+    @Benchmark
+    public TileClickBehavior valueOf() {
+        int current = next;
+        next = (current + 1) & (NAMES.length - 1);
+
+        return TileClickBehavior.valueOf(NAMES[current], TileClickBehavior.TOGGLE_SERVICE);
+    }
+
+}
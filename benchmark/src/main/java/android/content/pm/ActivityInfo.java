@@ -0,0 +1,13 @@
+package android.content.pm;
+
+public class ActivityInfo {
+
+    public static final int SCREEN_ORIENTATION_LANDSCAPE = 0;
+    public static final int SCREEN_ORIENTATION_PORTRAIT = 1;
+    public static final int SCREEN_ORIENTATION_SENSOR_LANDSCAPE = 6;
+    public static final int SCREEN_ORIENTATION_SENSOR_PORTRAIT = 7;
+    public static final int SCREEN_ORIENTATION_REVERSE_LANDSCAPE = 8;
+    public static final int SCREEN_ORIENTATION_REVERSE_PORTRAIT = 9;
+    public static final int SCREEN_ORIENTATION_FULL_SENSOR = 10;
+
+}
@@ -0,0 +1,15 @@
+package android.content.pm;
+
+public class ApplicationInfo {
+
+    public static final int CATEGORY_UNDEFINED = -1;
+    public static final int CATEGORY_GAME = 0;
+    public static final int CATEGORY_AUDIO = 1;
+    public static final int CATEGORY_VIDEO = 2;
+    public static final int CATEGORY_IMAGE = 3;
+    public static final int CATEGORY_SOCIAL = 4;
+    public static final int CATEGORY_NEWS = 5;
+    public static final int CATEGORY_MAPS = 6;
+    public static final int CATEGORY_PRODUCTIVITY = 7;
+
+}
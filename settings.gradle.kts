@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Rotation Controller"
 include(":app")
+include(":benchmark")